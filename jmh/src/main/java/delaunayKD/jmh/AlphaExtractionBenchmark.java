@@ -0,0 +1,73 @@
+package delaunayKD.jmh;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import delaunayKD.AlphaFaceExtractor;
+import delaunayKD.Enumerator;
+import delaunayKD.OnlineEnumerator;
+import delaunayKD.alpha.QueryRectAlphaHalfFace;
+
+// AlphaFaceExtractor.extractAlphaFaces. the enumeration is built once per
+// trial, but extraction registers the simplices with their unique faces, so
+// every invocation extracts from a fresh copy restored from a checkpoint of
+// it, which isn't timed.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class AlphaExtractionBenchmark {
+
+	@Param({ "2", "3", "4" })
+	public int dim;
+
+	@Param({ "1000", "4000" })
+	public int n;
+
+	@Param({ "unit", "ball", "moment" })
+	public String distribution;
+
+	private File enumerationCheckpoint;
+	// per invocation
+	private OnlineEnumerator copy;
+
+	@Setup(Level.Trial)
+	public void buildEnumeration() {
+		OnlineEnumerator online = BenchmarkData.buildPrefix(BenchmarkData.generatePoints(distribution, n, dim), n,
+				new Enumerator(dim, true, false));
+		enumerationCheckpoint = BenchmarkData.checkpoint(online);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteCheckpoint() {
+		enumerationCheckpoint.delete();
+	}
+
+	@Setup(Level.Invocation)
+	public void restoreEnumeration() {
+		copy = OnlineEnumerator.resume(enumerationCheckpoint);
+	}
+
+	@Benchmark
+	public ArrayList<QueryRectAlphaHalfFace> extractAlphaFaces() {
+		return AlphaFaceExtractor.extractAlphaFaces(copy.incTriangulator, copy.points());
+	}
+
+}
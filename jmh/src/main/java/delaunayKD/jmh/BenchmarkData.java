@@ -0,0 +1,94 @@
+package delaunayKD.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import delaunayKD.Enumerator;
+import delaunayKD.OnlineEnumerator;
+import delaunayKD.geometry.AbstractSimplex;
+import delaunayKD.geometry.Point;
+import delaunayKD.misc.UtilityMethods;
+import delaunayKD.triangulator.ArrayStack;
+import delaunayKD.triangulator.HoleTriangulator;
+import delaunayKD.triangulator.Star;
+
+// point sets, enumerations of prefixes of them and the single steps of a
+// point insertion, as done by AllSimplicesFinder.findAllSimplices (without
+// sink and alpha bookkeeping), so the benchmarks can time them in isolation
+public class BenchmarkData {
+
+	// distribution: "unit" (unit hypercube), "ball", "moment" (noisy moment
+	// curve) or "exactMoment" (moment curve without noise, nearly degenerate).
+	// fixed seed, so all forks see the same points. the exact moment curve's
+	// output grows quadratically in n in 2D and 3D and cubically in 4D (about
+	// 300k simplices/facets for n = 100), so it isn't in the default parameter
+	// grids and needs a small n, e.g. -p distribution=exactMoment -p n=100.
+	public static ArrayList<Point> generatePoints(String distribution, int count, int dim) {
+		Random random = new Random(42L);
+		if (distribution.equals("unit")) {
+			return UtilityMethods.generatePoints(random, count, dim);
+		} else if (distribution.equals("ball")) {
+			return UtilityMethods.generatePointsSphere(random, count, dim);
+		} else if (distribution.equals("moment")) {
+			return UtilityMethods.generatePointsMomentCurve(random, count, dim);
+		} else if (distribution.equals("exactMoment")) {
+			return UtilityMethods.generatePointsExactMomentCurve(count, dim);
+		} else {
+			throw new RuntimeException("unknown point distribution " + distribution);
+		}
+	}
+
+	// enumeration of the first count points, appended one at a time
+	public static OnlineEnumerator buildPrefix(ArrayList<Point> points, int count, Enumerator enumerator) {
+		OnlineEnumerator online = new OnlineEnumerator(enumerator);
+		for (int pIdx = 0; pIdx < count; pIdx++) {
+			online.append(coords(points.get(pIdx)));
+		}
+		return online;
+	}
+
+	// writes online to a temporary checkpoint file (deleted on exit), so a
+	// benchmark modifying an enumeration can restore a fresh copy of it
+	// (OnlineEnumerator.resume) instead of rebuilding it
+	public static File checkpoint(OnlineEnumerator online) {
+		try {
+			File file = File.createTempFile("benchmark", ".dkcp");
+			file.deleteOnExit();
+			online.checkpoint(file);
+			return file;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static double[] coords(Point p) {
+		return Arrays.copyOfRange(p.coords(), p.offset(), p.offset() + p.store.dim);
+	}
+
+	// attaches pNew to the enumeration and creates its star and hole
+	// triangulation
+	public static void bind(Point pNew, Enumerator enumerator) {
+		pNew.enumerator = enumerator;
+		new HoleTriangulator(pNew);
+		new Star(pNew);
+	}
+
+	// registers the new simplices of row 0 with their stars and works off all
+	// resulting star and hole triangulation updates (rows >0). returns the
+	// number of simplices/facets found.
+	public static int registerSimplices(ArrayList<AbstractSimplex> incrementalNewSimplices, Point pNew) {
+		int simplexCount = 0;
+		ArrayStack<AbstractSimplex> simplexStack = new ArrayStack<AbstractSimplex>();
+		simplexStack.pushAll(incrementalNewSimplices);
+		while (!simplexStack.isEmpty()) {
+			AbstractSimplex simplex = simplexStack.pop();
+			simplexCount++;
+			simplexStack.pushAll(simplex.minPoint().star.registerSimplex(simplex, pNew));
+		}
+		return simplexCount;
+	}
+
+}
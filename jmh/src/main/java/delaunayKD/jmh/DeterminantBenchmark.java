@@ -0,0 +1,53 @@
+package delaunayKD.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import delaunayKD.misc.UtilityMethods;
+
+// UtilityMethods.det for the matrix sizes of orientation and insphere tests
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DeterminantBenchmark {
+
+	@Param({ "2", "3", "4", "5", "6", "8" })
+	public int size;
+
+	// several matrices so the branches of the elimination aren't learned
+	private double[][] matrices;
+	private int matrixIdx = 0;
+
+	@Setup
+	public void generateMatrices() {
+		Random random = new Random(42L);
+		matrices = new double[64][size * size];
+		for (double[] matrix : matrices) {
+			for (int i = 0; i < matrix.length; i++) {
+				matrix[i] = 2 * random.nextDouble() - 1;
+			}
+		}
+	}
+
+	@Benchmark
+	public double det() {
+		matrixIdx = (matrixIdx + 1) & (matrices.length - 1);
+		return UtilityMethods.det(matrices[matrixIdx], size);
+	}
+
+}
@@ -0,0 +1,55 @@
+package delaunayKD.jmh;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import delaunayKD.Enumerator;
+import delaunayKD.geometry.AbstractSimplex;
+import delaunayKD.geometry.Point;
+
+// whole enumeration runs, i.e. what misc/Benchmarks measures
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class EnumerationBenchmark {
+
+	@Param({ "2", "3", "4" })
+	public int dim;
+
+	@Param({ "1000", "4000" })
+	public int n;
+
+	@Param({ "unit", "ball", "moment" })
+	public String distribution;
+
+	private ArrayList<Point> points;
+
+	// stars and hole triangulations are attached to the points, so every run
+	// needs fresh ones
+	@Setup(Level.Invocation)
+	public void generatePoints() {
+		points = BenchmarkData.generatePoints(distribution, n, dim);
+	}
+
+	@Benchmark
+	public ArrayList<AbstractSimplex> findAllSimplices() {
+		return new Enumerator(dim).findAllSimplices(points);
+	}
+
+}
@@ -0,0 +1,129 @@
+package delaunayKD.jmh;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import delaunayKD.AllSimplicesFinder;
+import delaunayKD.Enumerator;
+import delaunayKD.OnlineEnumerator;
+import delaunayKD.geometry.AbstractSimplex;
+import delaunayKD.geometry.Point;
+
+// the steps of inserting point n into an enumeration of the first n points:
+// locating it (AllSimplicesFinder.locate), inserting it into row 0
+// (IncrementalTriangulator.addPoint), and the resulting star and hole
+// triangulation updates (Star.registerSimplex and HoleTriangulator.update),
+// as well as inserting the k points n, ..., n + k - 1 as a whole.
+// the enumeration of the first n points is built once per trial. locate
+// doesn't modify it and runs on it directly. the other benchmarks do, so
+// every invocation gets a fresh copy restored from a checkpoint of it,
+// which takes a fraction of rebuilding it and isn't timed. invocations take
+// microseconds and more, well above the timestamping overhead of a
+// per-invocation setup.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 10, time = 5)
+@Fork(1)
+public class InsertionBenchmark {
+
+	@Param({ "2", "3", "4" })
+	public int dim;
+
+	@Param({ "1000", "2000" })
+	public int n;
+
+	@Param({ "unit", "ball", "moment" })
+	public String distribution;
+
+	// points inserted per invocation of insertPoints
+	@Param({ "16" })
+	public int k;
+
+	private ArrayList<Point> points;
+	private OnlineEnumerator prefix;
+	private File prefixCheckpoint;
+
+	// per invocation
+	private OnlineEnumerator copy;
+	private Point pNew;
+	private AbstractSimplex location;
+	private ArrayList<AbstractSimplex> incrementalNewSimplices;
+
+	@Setup(Level.Trial)
+	public void buildPrefix() {
+		points = BenchmarkData.generatePoints(distribution, n + k, dim);
+		prefix = BenchmarkData.buildPrefix(points, n, new Enumerator(dim));
+		prefixCheckpoint = BenchmarkData.checkpoint(prefix);
+		pNew = points.get(n);
+		BenchmarkData.bind(pNew, prefix.enumerator);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteCheckpoint() {
+		prefixCheckpoint.delete();
+	}
+
+	@Setup(Level.Invocation)
+	public void restorePrefix(BenchmarkParams params) {
+		if (params.getBenchmark().endsWith("locate")) {
+			return;
+		}
+		copy = OnlineEnumerator.resume(prefixCheckpoint);
+		if (params.getBenchmark().endsWith("insertPoints")) {
+			return;
+		}
+		// pNew doesn't belong to copy's point store, which only matters for
+		// the next append, and copy is discarded before that
+		BenchmarkData.bind(pNew, copy.enumerator);
+		location = locate(copy);
+		if (params.getBenchmark().endsWith("updateStarsAndHoles")) {
+			incrementalNewSimplices = copy.incTriangulator.addPoint(pNew, location);
+		}
+	}
+
+	private AbstractSimplex locate(OnlineEnumerator online) {
+		return n >= dim ? AllSimplicesFinder.locate(pNew, online.point(n - dim).star) : null;
+	}
+
+	@Benchmark
+	public AbstractSimplex locate() {
+		return locate(prefix);
+	}
+
+	@Benchmark
+	public ArrayList<AbstractSimplex> addPoint() {
+		return copy.incTriangulator.addPoint(pNew, location);
+	}
+
+	@Benchmark
+	public int updateStarsAndHoles() {
+		return BenchmarkData.registerSimplices(incrementalNewSimplices, pNew);
+	}
+
+	@Benchmark
+	public long insertPoints() {
+		for (int pIdx = n; pIdx < n + k; pIdx++) {
+			copy.append(BenchmarkData.coords(points.get(pIdx)));
+		}
+		return copy.simplexCount();
+	}
+
+}
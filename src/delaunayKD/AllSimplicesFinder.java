@@ -1,22 +1,33 @@
 package delaunayKD;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import delaunayKD.geometry.AbstractSimplex;
 import delaunayKD.geometry.Facet;
 import delaunayKD.geometry.Point;
 import delaunayKD.geometry.Face;
+import delaunayKD.triangulator.ArrayStack;
 import delaunayKD.triangulator.HoleTriangulator;
 import delaunayKD.triangulator.IncrementalTriangulator;
 import delaunayKD.triangulator.Star;
 
 public class AllSimplicesFinder {
+	// defaults for enumerations without an explicit Enumerator context (see
+	// Enumerator.fromDefaults()). they are read once when a run starts.
 	public static int DIM = 3;
 
 	// whether to do bookkeeping for computation of temporal alpha-shape
 	public static boolean doAlphaBookkeeping = false;
 
+	// whether to cache orientation tests per unique face and insphere tests
+	// per simplex, trading memory for O(DIM) predicates
+	public static boolean cachePredicates = false;
+
 	public static ArrayList<AbstractSimplex> findAllSimplices(ArrayList<Point> points) {
 		IncrementalTriangulator incTriangulator = new IncrementalTriangulator();
 		return findAllSimplices(points, incTriangulator);
@@ -25,48 +36,376 @@ public class AllSimplicesFinder {
 	// allow supplying incTriangulator so its data structures remain accessible
 	public static ArrayList<AbstractSimplex> findAllSimplices(ArrayList<Point> points,
 			IncrementalTriangulator incTriangulator) {
-		ArrayList<AbstractSimplex> allSimplices = new ArrayList<AbstractSimplex>();
+		final ArrayList<AbstractSimplex> allSimplices = new ArrayList<AbstractSimplex>();
+		findAllSimplices(points, incTriangulator, new SimplexSink() {
+			@Override
+			public void simplexFound(AbstractSimplex simplex) {
+				allSimplices.add(simplex);
+			}
+
+			@Override
+			public void simplexKilled(AbstractSimplex simplex) {
+				// simplex is already in the list
+			}
+		});
+		return allSimplices;
+	}
+
+	// streaming variant: every simplex/facet is passed to sink as soon as it
+	// is found, and again once its firstSubsequentKillerIndex is set
+	public static void findAllSimplices(ArrayList<Point> points, IncrementalTriangulator incTriangulator,
+			SimplexSink sink) {
+		findAllSimplices(points, incTriangulator, sink, null);
+	}
+
+	// points are bound to the context of incTriangulator while inserted.
+	// parallel variant: if pool is given, the star/hole triangulation updates
+	// of each insertion run on it in waves (see insertPointParallel). sink
+	// calls are serialized, but simplices are found in a different order than
+	// in the sequential variant.
+	public static void findAllSimplices(ArrayList<Point> points, IncrementalTriangulator incTriangulator,
+			SimplexSink sink, ForkJoinPool pool) {
+		int simplexCount = insertPoints(points, incTriangulator, sink, pool, true);
+		System.out.println("creating simplices finished, got " + simplexCount + " simplices/facets.");
+	}
+
+	// inserts all points, see findAllSimplices(). prints progress only if
+	// printProgress, so that enumerations of window blocks stay quiet. returns
+	// the number of simplices found.
+	private static int insertPoints(ArrayList<Point> points, IncrementalTriangulator incTriangulator,
+			SimplexSink sink, ForkJoinPool pool, boolean printProgress) {
+		Enumerator enumerator = incTriangulator.enumerator;
+		int simplexCount = 0;
 		// stack of simplices that need to be registered with stars
-		Stack<AbstractSimplex> simplexStack = new Stack<AbstractSimplex>();
+		ArrayStack<AbstractSimplex> simplexStack = new ArrayStack<AbstractSimplex>();
+		if (pool != null) {
+			// simplices are destroyed from several threads
+			sink = synchronizedSink(sink);
+		}
+		incTriangulator.sink = sink;
 
 		for (int pIdx = 0; pIdx < points.size(); pIdx++) {
-			if (pIdx % 1000 == 0) {
+			if (printProgress && pIdx % 1000 == 0) {
 				System.out.println("inserting point " + pIdx);
 			}
+			simplexCount += insertPoint(points, pIdx, incTriangulator, sink, pool, simplexStack);
+		}
+		if (enumerator.alphaExtractor != null) {
+			enumerator.alphaExtractor.finish();
+		}
+		return simplexCount;
+	}
 
-			Point pNew = points.get(pIdx);
-			new HoleTriangulator(pNew); // hole triangulator for new point
-			new Star(pNew); // star for new point
+	// inserts points.get(pIdx) into all rows, given that its predecessors in
+	// points were inserted already. sink must be the sink of incTriangulator
+	// (synchronized if pool is given), simplexStack is scratch space. returns
+	// the number of simplices found.
+	static int insertPoint(ArrayList<Point> points, int pIdx, IncrementalTriangulator incTriangulator,
+			SimplexSink sink, ForkJoinPool pool, ArrayStack<AbstractSimplex> simplexStack) {
+		Enumerator enumerator = incTriangulator.enumerator;
+		EnumerationMetrics metrics = enumerator.metrics;
+		int simplexCount = 0;
 
-			// insert point into incremental construction (row 0)
-			AbstractSimplex location = pIdx >= DIM ? locate(pNew, points.get(pIdx - DIM).star) : null;
-			ArrayList<AbstractSimplex> incrementalNewSimplices = incTriangulator.addPoint(pNew, location);
-			simplexStack.addAll(incrementalNewSimplices);
+		Point pNew = points.get(pIdx);
+		pNew.enumerator = enumerator;
+		new HoleTriangulator(pNew).sink = sink; // hole triangulator for new point
+		new Star(pNew); // star for new point
+
+		// insert point into incremental construction (row 0)
+		AbstractSimplex location = pIdx >= enumerator.dim ? locate(pNew, points.get(pIdx - enumerator.dim).star) : null;
+		long start = metrics != null ? System.nanoTime() : 0;
+		ArrayList<AbstractSimplex> incrementalNewSimplices = incTriangulator.addPoint(pNew, location);
+		if (metrics != null) {
+			long now = System.nanoTime();
+			metrics.incrementalInsertion(now - start);
+			start = now;
+		}
+		if (pool != null) {
+			simplexCount += insertPointParallel(pNew, incrementalNewSimplices, sink, pool);
+		} else {
+			simplexStack.pushAll(incrementalNewSimplices);
 			// work off stack, register simplices with stars and trigger
 			// updates for hole triangulations (rows >0)
 			while (!simplexStack.isEmpty()) {
 				AbstractSimplex simplex = simplexStack.pop();
-				allSimplices.add(simplex);
-				if (AllSimplicesFinder.doAlphaBookkeeping) {
-					// store simplex with its faces' lists of known simplices
-					for (Face f : simplex.faces) {
-						f.knownSimplices.add(simplex);
+				simplexCount++;
+				registerFoundSimplex(simplex, sink);
+				// trigger star/hole triangulation update
+				simplexStack.pushAll(simplex.minPoint().star.registerSimplex(simplex, pNew));
+			}
+		}
+		if (metrics != null) {
+			metrics.starAndHoleUpdates(System.nanoTime() - start);
+			metrics.pointInserted();
+		}
+		if (enumerator.alphaExtractor != null) {
+			enumerator.alphaExtractor.pointInserted(pNew);
+		}
+		return simplexCount;
+	}
+
+	// registers the new simplices of the incremental construction with their
+	// stars and triggers the updates of rows >0 in waves: all simplices of a
+	// wave are registered sequentially, then all stars which became complete
+	// (i.e. have no unmatched faces left) are updated in parallel. Updates of
+	// different stars only modify their own star and hole triangulation, and a
+	// star only becomes complete once all simplices it depends on from rows
+	// above were found. The simplices created by the updates form the next
+	// wave. Returns the number of simplices found.
+	private static int insertPointParallel(final Point pNew, ArrayList<AbstractSimplex> incrementalNewSimplices,
+			SimplexSink sink, ForkJoinPool pool) {
+		int simplexCount = 0;
+		ArrayList<AbstractSimplex> wave = incrementalNewSimplices;
+		while (!wave.isEmpty()) {
+			ArrayList<Star> completeStars = new ArrayList<Star>();
+			for (AbstractSimplex simplex : wave) {
+				simplexCount++;
+				registerFoundSimplex(simplex, sink);
+				Star star = simplex.minPoint().star;
+				if (star.addSimplex(simplex, pNew)) {
+					completeStars.add(star);
+				}
+			}
+
+			wave = new ArrayList<AbstractSimplex>();
+			if (completeStars.size() == 1) {
+				// not worth a round trip to the pool
+				wave.addAll(completeStars.get(0).update(pNew));
+			} else if (!completeStars.isEmpty()) {
+				ArrayList<Callable<ArrayList<AbstractSimplex>>> updates = new ArrayList<Callable<ArrayList<AbstractSimplex>>>(
+						completeStars.size());
+				for (final Star star : completeStars) {
+					updates.add(new Callable<ArrayList<AbstractSimplex>>() {
+						@Override
+						public ArrayList<AbstractSimplex> call() {
+							// copy, the update's list is reused by the next
+							// update on this thread
+							return new ArrayList<AbstractSimplex>(star.update(pNew));
+						}
+					});
+				}
+				// collect in order of stars to keep the result deterministic
+				for (Future<ArrayList<AbstractSimplex>> future : pool.invokeAll(updates)) {
+					try {
+						wave.addAll(future.get());
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					} catch (ExecutionException e) {
+						throw new RuntimeException(e.getCause());
 					}
 				}
-				// trigger star/hole triangulation update
-				ArrayList<AbstractSimplex> moreSimplices = simplex.minPoint().star.registerSimplex(simplex, pNew);
-				simplexStack.addAll(moreSimplices);
 			}
 		}
+		return simplexCount;
+	}
+
+	// hands a newly found simplex to sink and does alpha bookkeeping
+	private static void registerFoundSimplex(AbstractSimplex simplex, SimplexSink sink) {
+		sink.simplexFound(simplex);
+		Enumerator enumerator = simplex.faces[0].enumerator();
+		if (enumerator.metrics != null) {
+			// hole triangulation simplices have their middle point as last
+			// previous killer
+			enumerator.metrics.simplexEmitted(simplex.lastPreviousKillerIndex == Integer.MIN_VALUE ? 0
+					: simplex.lastPreviousKillerIndex + 1);
+		}
+		if (enumerator.alphaExtractor != null) {
+			enumerator.alphaExtractor.simplexFound(simplex);
+		}
+		if (enumerator.doAlphaBookkeeping) {
+			// store simplex with its faces' lists of known simplices
+			for (Face f : simplex.faces) {
+				f.addKnownSimplex(simplex);
+			}
+		}
+	}
 
-		System.out.println("creating simplices finished, got " + allSimplices.size() + " simplices/facets.");
+	static SimplexSink synchronizedSink(final SimplexSink sink) {
+		return new SimplexSink() {
+			@Override
+			public synchronized void simplexFound(AbstractSimplex simplex) {
+				sink.simplexFound(simplex);
+			}
+
+			@Override
+			public synchronized void simplexKilled(AbstractSimplex simplex) {
+				sink.simplexKilled(simplex);
+			}
+		};
+	}
+
+	// bounded-window mode: only simplices/facets with a vertex span of at most
+	// maxWindowLength points are reported, i.e. those which are part of the
+	// triangulation of some subsequence with at most maxWindowLength points.
+	// Rows of the enumeration build on all rows above them, so instead of
+	// retiring single stars and hole triangulations, the sequence is processed
+	// in overlapping blocks which are released once they are done, bounding
+	// memory by the window length rather than the sequence length. Each block
+	// owns the simplices whose highest index point lies in its owned range,
+	// and additionally contains the maxWindowLength - 1 points on either side
+	// of that range. Killer indices outside a block are not seen, but only
+	// matter for subsequences longer than maxWindowLength: reported lifetimes
+	// are clipped to lastPreviousKillerIndex >= max - maxWindowLength and
+	// firstSubsequentKillerIndex <= min + maxWindowLength (min/max: lowest/
+	// highest point index of the simplex), which makes them exact for all
+	// subsequences of at most maxWindowLength points and independent of the
+	// block layout. A block's simplices are reported once the block is done,
+	// each one's simplexKilled right after its simplexFound.
+	public static ArrayList<AbstractSimplex> findAllSimplicesInWindows(ArrayList<Point> points,
+			int maxWindowLength) {
+		final ArrayList<AbstractSimplex> allSimplices = new ArrayList<AbstractSimplex>();
+		findAllSimplicesInWindows(points, Enumerator.fromDefaults(), maxWindowLength, new SimplexSink() {
+			@Override
+			public void simplexFound(AbstractSimplex simplex) {
+				allSimplices.add(simplex);
+			}
+
+			@Override
+			public void simplexKilled(AbstractSimplex simplex) {
+				// simplex is already in the list
+			}
+		});
 		return allSimplices;
 	}
 
+	public static void findAllSimplicesInWindows(ArrayList<Point> points, final int maxWindowLength,
+			final SimplexSink sink) {
+		findAllSimplicesInWindows(points, Enumerator.fromDefaults(), maxWindowLength, sink);
+	}
+
+	public static void findAllSimplicesInWindows(ArrayList<Point> points, Enumerator enumerator,
+			int maxWindowLength, SimplexSink sink) {
+		// owned ranges are twice the window length to limit overlap
+		findAllSimplicesInWindows(points, enumerator, maxWindowLength,
+				(int) Math.min(Integer.MAX_VALUE / 4, 2L * maxWindowLength), sink, null);
+	}
+
+	// block-parallel variant: if pool is given, blocks are enumerated on it
+	// independently, each with its own incremental triangulation. blocks own
+	// ownedLength points each, i.e. contain ownedLength + 2 * (maxWindowLength
+	// - 1) points, so smaller owned ranges give more parallelism at the cost
+	// of more overlap. results are reported in block order, exactly as in the
+	// sequential variant, and at most twice as many blocks as the pool has
+	// threads are held at a time.
+	public static void findAllSimplicesInWindows(final ArrayList<Point> points, final Enumerator enumerator,
+			final int maxWindowLength, final int ownedLength, SimplexSink sink, ForkJoinPool pool) {
+		if (enumerator.doAlphaBookkeeping) {
+			throw new RuntimeException("alpha bookkeeping is not supported in bounded-window mode");
+		}
+		if (maxWindowLength < 1) {
+			throw new RuntimeException("window length must be positive");
+		}
+		if (ownedLength < 1 || ownedLength > Integer.MAX_VALUE / 4) {
+			throw new RuntimeException("owned block length out of range");
+		}
+		if (pool == null) {
+			for (int ownedStart = 0; ownedStart < points.size(); ownedStart += ownedLength) {
+				reportBlock(findOwnedSimplices(points, enumerator, maxWindowLength, ownedStart, ownedLength), sink);
+			}
+			return;
+		}
+		ArrayDeque<Future<ArrayList<AbstractSimplex>>> pendingBlocks = new ArrayDeque<Future<ArrayList<AbstractSimplex>>>();
+		int maxPendingBlocks = 2 * pool.getParallelism();
+		for (int ownedStart = 0; ownedStart < points.size(); ownedStart += ownedLength) {
+			if (pendingBlocks.size() == maxPendingBlocks) {
+				reportBlock(getBlock(pendingBlocks.poll()), sink);
+			}
+			final int blockOwnedStart = ownedStart;
+			pendingBlocks.add(pool.submit(new Callable<ArrayList<AbstractSimplex>>() {
+				@Override
+				public ArrayList<AbstractSimplex> call() {
+					return findOwnedSimplices(points, enumerator, maxWindowLength, blockOwnedStart, ownedLength);
+				}
+			}));
+		}
+		while (!pendingBlocks.isEmpty()) {
+			reportBlock(getBlock(pendingBlocks.poll()), sink);
+		}
+	}
+
+	private static ArrayList<AbstractSimplex> getBlock(Future<ArrayList<AbstractSimplex>> block) {
+		try {
+			return block.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private static void reportBlock(ArrayList<AbstractSimplex> ownedSimplices, SimplexSink sink) {
+		for (AbstractSimplex simplex : ownedSimplices) {
+			sink.simplexFound(simplex);
+			if (simplex.isDead()) {
+				sink.simplexKilled(simplex);
+			}
+		}
+	}
+
+	// enumerates the block owning the points ownedStart, ..., ownedStart +
+	// ownedLength - 1 and returns its simplices with a span of at most
+	// maxWindowLength points in order of discovery, with clipped lifetimes
+	private static ArrayList<AbstractSimplex> findOwnedSimplices(ArrayList<Point> points, Enumerator enumerator,
+			final int maxWindowLength, int ownedStart, int ownedLength) {
+		int blockStart = Math.max(0, ownedStart - maxWindowLength + 1);
+		int blockEnd = (int) Math.min(points.size(), (long) ownedStart + ownedLength + maxWindowLength - 1);
+		// highest index point of reported simplices must be in owned range
+		final int ownedMin = points.get(ownedStart).i;
+		final int ownedMax = ownedMin + ownedLength - 1;
+		// copy points so the block's stars and hole triangulations aren't
+		// attached to (and kept alive by) the caller's points
+		ArrayList<Point> blockPoints = new ArrayList<Point>(blockEnd - blockStart);
+		for (int pIdx = blockStart; pIdx < blockEnd; pIdx++) {
+			Point p = points.get(pIdx);
+			blockPoints.add(new Point(p.store, p.i));
+		}
+		final ArrayList<AbstractSimplex> ownedSimplices = new ArrayList<AbstractSimplex>();
+		insertPoints(blockPoints, enumerator.createIncrementalTriangulator(), new SimplexSink() {
+			@Override
+			public void simplexFound(AbstractSimplex simplex) {
+				int maxIndex = simplex.maxPoint().i;
+				if (maxIndex >= ownedMin && maxIndex <= ownedMax
+						&& maxIndex - simplex.minPoint().i < maxWindowLength) {
+					ownedSimplices.add(simplex);
+				}
+			}
+
+			@Override
+			public void simplexKilled(AbstractSimplex simplex) {
+				// simplex is already in the list
+			}
+		}, null, false);
+		// the block is done, so its simplices can be modified now
+		for (AbstractSimplex simplex : ownedSimplices) {
+			long lastPreviousKillerMin = (long) simplex.maxPoint().i - maxWindowLength;
+			long firstSubsequentKillerMax = (long) simplex.minPoint().i + maxWindowLength;
+			simplex.lastPreviousKillerIndex = (int) Math.max(simplex.lastPreviousKillerIndex, lastPreviousKillerMin);
+			simplex.firstSubsequentKillerIndex = (int) Math.min(simplex.firstSubsequentKillerIndex,
+					firstSubsequentKillerMax);
+		}
+		return ownedSimplices;
+	}
+
+	// per-thread scratch space of locate()
+	private static class LocateScratch {
+		final ArrayStack<AbstractSimplex> simplicesToExplore = new ArrayStack<AbstractSimplex>();
+		final ArrayList<AbstractSimplex> destroyedSimplices = new ArrayList<AbstractSimplex>();
+	}
+
+	private static final ThreadLocal<LocateScratch> locateScratch = new ThreadLocal<LocateScratch>() {
+		@Override
+		protected LocateScratch initialValue() {
+			return new LocateScratch();
+		}
+	};
+
 	// given the star of p_(new-DIM), locate pNew in the incremental
 	// construction. returns a simplex of the incremental construction which
 	// contains pNew in its circumsphere.
 	public static AbstractSimplex locate(Point pNew, Star star) {
+		EnumerationMetrics metrics = pNew.enumerator.metrics;
+		long start = metrics != null ? System.nanoTime() : 0;
+		int rowSteps = 0;
 		AbstractSimplex destroyedSimplex = (star.faceLatest.facesPoint(pNew) ? star.faceLatest
 				: star.faceLatest.r).simplex.original;
 		// loop: based on a destroyed hole triangulation simplex, find a
@@ -77,25 +416,27 @@ public class AllSimplicesFinder {
 
 			// we are in a hole triangulation
 			// BFS to find more destroyed simplices in hole triangulation
-			Stack<AbstractSimplex> simplicesToExplore = new Stack<AbstractSimplex>();
-			ArrayList<AbstractSimplex> destroyedSimplices = new ArrayList<AbstractSimplex>();
-			simplicesToExplore.add(destroyedSimplex);
+			LocateScratch scr = locateScratch.get();
+			ArrayStack<AbstractSimplex> simplicesToExplore = scr.simplicesToExplore;
+			ArrayList<AbstractSimplex> destroyedSimplices = scr.destroyedSimplices;
+			destroyedSimplices.clear();
+			long markEpoch = pNew.enumerator.nextMarkEpoch();
+			simplicesToExplore.push(destroyedSimplex);
 			while (!simplicesToExplore.isEmpty()) {
 				AbstractSimplex simplex = simplicesToExplore.pop();
-				if (simplex != null && !simplex.isMarked() && simplex.containsPointInCircumsphere(pNew)) {
-					simplex.mark();
+				if (simplex != null && !simplex.isMarked(markEpoch) && simplex.containsPointInCircumsphere(pNew)) {
+					simplex.mark(markEpoch);
 					destroyedSimplices.add(simplex);
 					for (Face face : simplex.faces) {
-						simplicesToExplore.add(face.r.simplex);
+						simplicesToExplore.push(face.r.simplex);
 					}
 					if (simplex instanceof Facet) {
 						for (Face face : simplex.faces[0].hNeighbors) {
-							simplicesToExplore.add(face.simplex);
+							simplicesToExplore.push(face.simplex);
 						}
 					}
 				}
 			}
-			AbstractSimplex.unmarkAll();
 
 			// find a destroyed simplex in the corresponding star
 			AbstractSimplex destroyedSimplexStar = null;
@@ -118,14 +459,14 @@ public class AllSimplicesFinder {
 				if (simplex instanceof Facet) {
 					Face face = simplex.faces[0];
 					Point[] facePoints = face.points();
-					for (int faceIdx = 0; faceIdx < DIM; faceIdx++) {
+					for (int faceIdx = 0; faceIdx < facePoints.length; faceIdx++) {
 						Point pOpposite = facePoints[faceIdx];
-						Face faceNeighbor = face.hNeighbors[faceIdx];
+						Face faceNeighbor = face.hNeighbor(faceIdx);
 						if (faceNeighbor.simplex == null) {
 							// faceNeighbor is a boundary face
 							// look at adjacent facet in the star
-							AbstractSimplex starFacet = faceNeighbor.faceBoundary.hNeighbors[faceNeighbor
-									.pointOppositeIndex(face, pOpposite)].simplex;
+							AbstractSimplex starFacet = faceNeighbor.faceBoundary.hNeighbor(faceNeighbor
+									.pointOppositeIndex(face, pOpposite)).simplex;
 							if (starFacet.containsPointInCircumsphere(pNew)) {
 								// this facet faces pNew
 								destroyedSimplexStar = starFacet;
@@ -136,6 +477,10 @@ public class AllSimplicesFinder {
 				}
 			}
 			destroyedSimplex = destroyedSimplexStar.original;
+			rowSteps++;
+		}
+		if (metrics != null) {
+			metrics.locate(rowSteps, System.nanoTime() - start);
 		}
 		return destroyedSimplex;
 	}
@@ -1,10 +1,14 @@
 package delaunayKD;
 
-import static delaunayKD.AllSimplicesFinder.DIM;
-
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import delaunayKD.alpha.AlignedQueryRects;
 import delaunayKD.alpha.QueryRectAlphaHalfFace;
@@ -30,19 +34,59 @@ public class AlphaFaceExtractor {
 		// radius range for that face in the overlapping lifetime interval
 		ArrayList<QueryRectAlphaHalfFace> allAlphaHalfFaces = new ArrayList<QueryRectAlphaHalfFace>();
 		for (int i = 0; i < uniqueFaces.size(); i++) {
-			UniqueFace u = uniqueFaces.get(i);
-			Face testFace = new Face(u.points);
-			new Facet(testFace, -1);
-			new Facet(testFace.r, -1);
-			int bottom = testFace.maxPoint().i;
-
-			allAlphaHalfFaces.addAll(intersectQueryRects(testFace, u.rectsFront, u.rectsBack, bottom, u));
-			allAlphaHalfFaces.addAll(intersectQueryRects(testFace.r, u.rectsBack, u.rectsFront, bottom, u));
+			extractAlphaFaces(uniqueFaces.get(i), allAlphaHalfFaces);
 		}
 
 		return allAlphaHalfFaces;
 	}
 
+	// parallel variant: if pool is given, registration runs on it partitioned
+	// by rows (triangulators), and extraction partitioned by unique faces. the
+	// result is the same as that of the sequential variant, in the same order.
+	public static ArrayList<QueryRectAlphaHalfFace> extractAlphaFaces(IncrementalTriangulator incTriangulator,
+			ArrayList<Point> points, ForkJoinPool pool) {
+		if (pool == null) {
+			return extractAlphaFaces(incTriangulator, points);
+		}
+		final ArrayList<UniqueFace> uniqueFaces = registerAllSimplicesAndGatherUniqueFaces(incTriangulator, points,
+				pool);
+
+		ArrayList<Callable<ArrayList<QueryRectAlphaHalfFace>>> extractions = new ArrayList<Callable<ArrayList<QueryRectAlphaHalfFace>>>();
+		int chunkSize = chunkSize(uniqueFaces.size(), pool);
+		for (int start = 0; start < uniqueFaces.size(); start += chunkSize) {
+			final int chunkStart = start;
+			final int chunkEnd = Math.min(start + chunkSize, uniqueFaces.size());
+			extractions.add(new Callable<ArrayList<QueryRectAlphaHalfFace>>() {
+				@Override
+				public ArrayList<QueryRectAlphaHalfFace> call() {
+					ArrayList<QueryRectAlphaHalfFace> alphaHalfFaces = new ArrayList<QueryRectAlphaHalfFace>();
+					for (int i = chunkStart; i < chunkEnd; i++) {
+						extractAlphaFaces(uniqueFaces.get(i), alphaHalfFaces);
+					}
+					return alphaHalfFaces;
+				}
+			});
+		}
+		ArrayList<QueryRectAlphaHalfFace> allAlphaHalfFaces = new ArrayList<QueryRectAlphaHalfFace>();
+		for (ArrayList<QueryRectAlphaHalfFace> alphaHalfFaces : invokeAllInOrder(extractions, pool)) {
+			allAlphaHalfFaces.addAll(alphaHalfFaces);
+		}
+		return allAlphaHalfFaces;
+	}
+
+	// adds the alpha half faces of both sides of u to alphaHalfFaces. only
+	// reads u's registered rects, so different faces can be extracted
+	// concurrently.
+	static void extractAlphaFaces(UniqueFace u, ArrayList<QueryRectAlphaHalfFace> alphaHalfFaces) {
+		Face testFace = new Face(u.points);
+		new Facet(testFace, -1);
+		new Facet(testFace.r, -1);
+		int bottom = testFace.maxPoint().i;
+
+		alphaHalfFaces.addAll(intersectQueryRects(testFace, u.rectsFront, u.rectsBack, bottom, u));
+		alphaHalfFaces.addAll(intersectQueryRects(testFace.r, u.rectsBack, u.rectsFront, bottom, u));
+	}
+
 	// front are the rects of this half face, back are the rects of the reverse.
 	// testFace is a face with facets on both sides, representing the face whose
 	// intervals are to be extracted.
@@ -99,7 +143,7 @@ public class AlphaFaceExtractor {
 							// qrsRightFront.simplex' faces we're working on
 							// currently)
 							Face face = null;
-							for (int i = 0; i < DIM + 1; i++) {
+							for (int i = 0; i < uniqueFace.points.length + 1; i++) {
 								// for facets the first face must be a match so
 								// we don't need to limit the dim index
 								if (qrsRightFront.simplex.faces[i].uniqueFace == uniqueFace) {
@@ -141,7 +185,7 @@ public class AlphaFaceExtractor {
 							// qrsBottomFront.simplex'
 							// faces we're working on currently)
 							Face face = null;
-							for (int i = 0; i < DIM + 1; i++) {
+							for (int i = 0; i < uniqueFace.points.length + 1; i++) {
 								// for facets the first face must be a match so
 								// we don't need to limit the dim index
 								if (qrsBottomFront.simplex.faces[i].uniqueFace == uniqueFace) {
@@ -174,7 +218,7 @@ public class AlphaFaceExtractor {
 					// qrsBottomFront.simplex' faces we're working on
 					// currently)
 					Face face = null;
-					for (int i = 0; i < DIM + 1; i++) {
+					for (int i = 0; i < uniqueFace.points.length + 1; i++) {
 						// for facets the first face must be a match so
 						// we don't need to limit the dim index
 						if (qrsBottomFront.simplex.faces[i].uniqueFace == uniqueFace) {
@@ -213,7 +257,7 @@ public class AlphaFaceExtractor {
 						// (but first figure out which of qrsRightFront.simplex'
 						// faces we're working on currently)
 						Face face = null;
-						for (int i = 0; i < DIM + 1; i++) {
+						for (int i = 0; i < uniqueFace.points.length + 1; i++) {
 							// for facets the first face must be a match so
 							// we don't need to limit the dim index
 							if (qrsRightFront.simplex.faces[i].uniqueFace==uniqueFace) {
@@ -285,7 +329,7 @@ public class AlphaFaceExtractor {
 		for (int i = 0; i < rightListFront.size(); i++) {
 			QueryRectSimplex qrs = rightListFront.get(i);
 			if (qrs.simplex instanceof Simplex) {
-				if (!testFace.facesPoint(((Simplex) qrs.simplex).circumcenter)) {
+				if (!testFace.facesPoint(((Simplex) qrs.simplex).circumcenter())) {
 					// discard from here
 					rightListFront = rightListFront.subList(0, i);
 					break;
@@ -295,7 +339,7 @@ public class AlphaFaceExtractor {
 		for (int i = bottomListFront.size() - 1; i >= 0; i--) {
 			QueryRectSimplex qrs = bottomListFront.get(i);
 			if (qrs.simplex instanceof Simplex) {
-				if (!testFace.facesPoint(((Simplex) qrs.simplex).circumcenter)) {
+				if (!testFace.facesPoint(((Simplex) qrs.simplex).circumcenter())) {
 					// discard up until here
 					bottomListFront = bottomListFront.subList(i + 1, bottomListFront.size());
 					break;
@@ -316,7 +360,7 @@ public class AlphaFaceExtractor {
 			boolean merge = true;
 			QueryRectSimplex qrs = bottomListBack.get(i);
 			if (qrs.simplex instanceof Simplex) {
-				if (testFace.facesPoint(((Simplex) qrs.simplex).circumcenter)) {
+				if (testFace.facesPoint(((Simplex) qrs.simplex).circumcenter())) {
 					merge = false;
 				}
 			}
@@ -336,7 +380,7 @@ public class AlphaFaceExtractor {
 		// correct/confirm potential top boundary in right list
 		for (int i = 0; i < rightListBack.size(); i++) {
 			QueryRectSimplex qrs = rightListBack.get(i);
-			if (!testFace.facesPoint(((Simplex) qrs.simplex).circumcenter)) {
+			if (!testFace.facesPoint(((Simplex) qrs.simplex).circumcenter())) {
 				// right rects' top can't be below bottom rects' top, this maxes
 				top = qrs.upperMax;
 				if (i == rightListBack.size() - 1) {
@@ -418,10 +462,133 @@ public class AlphaFaceExtractor {
 		return uniqueFaces;
 	}
 
+	// parallel variant of registerAllSimplicesAndGatherUniqueFaces, returns
+	// the unique faces in the same order. rows are registered concurrently,
+	// so a unique face's rects arrive out of order and are sorted afterwards
+	// by their row's lastPreviousKillerIndex (row 0 first, then hole
+	// triangulations by point index, as in the sequential variant).
+	public static ArrayList<UniqueFace> registerAllSimplicesAndGatherUniqueFaces(
+			IncrementalTriangulator incTriangulator, ArrayList<Point> points, ForkJoinPool pool) {
+		final ArrayList<ArrayList<Face>> rows = new ArrayList<ArrayList<Face>>(points.size() + 1);
+		rows.add(incTriangulator.knownFaces);
+		for (int i = 0; i < points.size(); i++) {
+			rows.add(points.get(i).ht.knownFaces);
+		}
+		int chunkSize = chunkSize(rows.size(), pool);
+
+		// 1. register all rows
+		ArrayList<Callable<ArrayList<UniqueFace>>> registrations = new ArrayList<Callable<ArrayList<UniqueFace>>>();
+		for (int start = 0; start < rows.size(); start += chunkSize) {
+			final int chunkStart = start;
+			final int chunkEnd = Math.min(start + chunkSize, rows.size());
+			registrations.add(new Callable<ArrayList<UniqueFace>>() {
+				@Override
+				public ArrayList<UniqueFace> call() {
+					for (int row = chunkStart; row < chunkEnd; row++) {
+						for (Face f : rows.get(row)) {
+							UniqueFace u = f.uniqueFace;
+							synchronized (u) {
+								registerSimplices(f);
+							}
+						}
+					}
+					return null;
+				}
+			});
+		}
+		invokeAllInOrder(registrations, pool);
+
+		// 2. gather unique faces: a face is picked by the first row it occurs
+		// in. rows only read rects here, since other rows may still be
+		// looking at them.
+		ArrayList<Callable<ArrayList<UniqueFace>>> gatherings = new ArrayList<Callable<ArrayList<UniqueFace>>>();
+		for (int start = 0; start < rows.size(); start += chunkSize) {
+			final int chunkStart = start;
+			final int chunkEnd = Math.min(start + chunkSize, rows.size());
+			gatherings.add(new Callable<ArrayList<UniqueFace>>() {
+				@Override
+				public ArrayList<UniqueFace> call() {
+					ArrayList<UniqueFace> uniqueFaces = new ArrayList<UniqueFace>();
+					for (int row = chunkStart; row < chunkEnd; row++) {
+						for (Face f : rows.get(row)) {
+							if (rowKey(f) == firstRowKey(f.uniqueFace)) {
+								uniqueFaces.add(f.uniqueFace);
+							}
+						}
+					}
+					return uniqueFaces;
+				}
+			});
+		}
+		final ArrayList<ArrayList<UniqueFace>> candidates = invokeAllInOrder(gatherings, pool);
+
+		// 3. drop duplicates (a face may occur twice in its first row) and
+		// sort the rects of the picked faces
+		ArrayList<Callable<ArrayList<UniqueFace>>> pickings = new ArrayList<Callable<ArrayList<UniqueFace>>>();
+		for (final ArrayList<UniqueFace> chunkCandidates : candidates) {
+			pickings.add(new Callable<ArrayList<UniqueFace>>() {
+				@Override
+				public ArrayList<UniqueFace> call() {
+					ArrayList<UniqueFace> uniqueFaces = new ArrayList<UniqueFace>(chunkCandidates.size());
+					for (UniqueFace u : chunkCandidates) {
+						if (!u.picked) {
+							u.picked = true;
+							Collections.sort(u.rectsFront, ROW_ORDER);
+							Collections.sort(u.rectsBack, ROW_ORDER);
+							uniqueFaces.add(u);
+						}
+					}
+					return uniqueFaces;
+				}
+			});
+		}
+		ArrayList<UniqueFace> uniqueFaces = new ArrayList<UniqueFace>();
+		for (ArrayList<UniqueFace> chunkUniqueFaces : invokeAllInOrder(pickings, pool)) {
+			uniqueFaces.addAll(chunkUniqueFaces);
+		}
+		return uniqueFaces;
+	}
+
+	// orders columns of rects by the row they stem from
+	static final Comparator<AlignedQueryRects> ROW_ORDER = new Comparator<AlignedQueryRects>() {
+		@Override
+		public int compare(AlignedQueryRects rects1, AlignedQueryRects rects2) {
+			return Integer.compare(rects1.lowerMin, rects2.lowerMin);
+		}
+	};
+
+	// lastPreviousKillerIndex shared by all simplices of f's row
+	private static int rowKey(Face f) {
+		return !f.hasKnownSimplices() ? f.r.knownSimplices.get(0).lastPreviousKillerIndex
+				: f.knownSimplices.get(0).lastPreviousKillerIndex;
+	}
+
+	private static int firstRowKey(UniqueFace u) {
+		int key = Integer.MAX_VALUE;
+		for (AlignedQueryRects rects : u.rectsFront) {
+			key = Math.min(key, rects.lowerMin);
+		}
+		for (AlignedQueryRects rects : u.rectsBack) {
+			key = Math.min(key, rects.lowerMin);
+		}
+		return key;
+	}
+
 	// converts all face's known simplices to query rectangles and inserts them
 	// into a sorted list of (sorted) AlignedQueryRects
 	private static void registerSimplicesAndGatherUniqueFaces(Face f, ArrayList<UniqueFace> uniqueFaces) {
-		if (f.knownSimplices.isEmpty() && f.r.knownSimplices.isEmpty()) {
+		registerSimplices(f);
+
+		// collect unique faces
+		UniqueFace u = f.uniqueFace;
+		if (!u.picked) {
+			u.picked = true;
+			uniqueFaces.add(u);
+		}
+	}
+
+	static void registerSimplices(Face f) {
+		if (!f.hasKnownSimplices() && !f.r.hasKnownSimplices()) {
 			System.out.println("this shouldn't happen");
 		}
 
@@ -430,19 +597,33 @@ public class AlphaFaceExtractor {
 		ArrayList<AlignedQueryRects> ownList = f.isReverse ? u.rectsBack : u.rectsFront;
 		ArrayList<AlignedQueryRects> otherList = f.isReverse ? u.rectsFront : u.rectsBack;
 
-		if (!f.knownSimplices.isEmpty()) {
+		if (f.hasKnownSimplices()) {
 			ownList.add(new AlignedQueryRects(f.knownSimplices));
 		}
 
-		if (!f.r.knownSimplices.isEmpty()) {
+		if (f.r.hasKnownSimplices()) {
 			otherList.add(new AlignedQueryRects(f.r.knownSimplices));
 		}
+	}
 
-		// collect unique faces
-		if (!u.picked) {
-			u.picked = true;
-			uniqueFaces.add(u);
+	// splits count items into a few chunks per thread of pool
+	private static int chunkSize(int count, ForkJoinPool pool) {
+		return Math.max(1, count / (4 * pool.getParallelism()) + 1);
+	}
+
+	// runs tasks on pool, returns their results in order of tasks
+	private static <T> ArrayList<T> invokeAllInOrder(ArrayList<Callable<T>> tasks, ForkJoinPool pool) {
+		ArrayList<T> results = new ArrayList<T>(tasks.size());
+		for (Future<T> future : pool.invokeAll(tasks)) {
+			try {
+				results.add(future.get());
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
 		}
+		return results;
 	}
 
 }
@@ -0,0 +1,11 @@
+package delaunayKD;
+
+import delaunayKD.alpha.QueryRectAlphaHalfFace;
+
+// receives the cuboids of the temporal alpha-shape as they become final
+// during enumeration, see Enumerator.streamAlphaFaces
+public interface AlphaFaceSink {
+
+	public void alphaFaceFound(QueryRectAlphaHalfFace alphaFace);
+
+}
@@ -0,0 +1,598 @@
+package delaunayKD;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import delaunayKD.geometry.AbstractSimplex;
+import delaunayKD.geometry.Face;
+import delaunayKD.geometry.Facet;
+import delaunayKD.geometry.Point;
+import delaunayKD.geometry.PointStore;
+import delaunayKD.geometry.Simplex;
+import delaunayKD.geometry.UniqueFace;
+import delaunayKD.triangulator.HoleTriangulator;
+import delaunayKD.triangulator.IncrementalTriangulator;
+import delaunayKD.triangulator.Star;
+
+// Snapshot of an OnlineEnumerator between two insertions (see
+// OnlineEnumerator.checkpoint/resume). Between insertions, the state of the
+// enumeration is the graph of points, faces, unique faces and simplices
+// reachable from the stars and hole triangulations of the points (which is
+// where every insertion starts its traversals), plus the lists of known
+// faces and the open faces of a streaming alpha extraction. That graph is
+// written with objects replaced by ids, so restoring it doesn't evaluate a
+// single predicate. Structures no longer reachable, e.g. dead simplices
+// without known faces, are not written. Caches (circumspheres, cached
+// predicates, search marks) are not written either, they are recomputed on
+// demand and yield the same values, so a resumed enumeration continues
+// bit-identically.
+//
+// File layout (little endian, refs are varints of id + 1, 0 for null):
+// header: magic, version, dim, flags, pointCount, simplexCount,
+// and the numbers of stored unique faces, face pairs and simplices
+// allocation: point coordinates; unique face vertices; unique face of each
+// face pair (ref 2 * id is the non-reverse face, 2 * id + 1 its reverse);
+// type, lastPreviousKillerIndex and faces of each simplex
+// links: unique faces, face pairs, simplices, triangulators, stars
+// streaming alpha extraction: counters and open faces
+// trailer: magic
+class EnumerationCheckpoint {
+
+	private static final int MAGIC = 0x444b4350; // "DKCP"
+	private static final int VERSION = 1;
+
+	private static final int FLAG_ALPHA_BOOKKEEPING = 1;
+	private static final int FLAG_CACHE_PREDICATES = 2;
+	private static final int FLAG_STREAM_ALPHA_FACES = 4;
+
+	private static final int TYPE_SIMPLEX = 0;
+	private static final int TYPE_FACET = 1;
+
+	// ids of all objects reachable from the roots, in order of discovery. ids
+	// are kept in the objects' checkpointRef fields while writing.
+	private static class Graph {
+		final ArrayList<UniqueFace> uniqueFaces = new ArrayList<UniqueFace>();
+		// face pairs are represented by their non-reverse face
+		final ArrayList<Face> facePairs = new ArrayList<Face>();
+		final ArrayList<AbstractSimplex> simplices = new ArrayList<AbstractSimplex>();
+
+		int ref(UniqueFace u) {
+			if (u == null) {
+				return 0;
+			}
+			if (u.checkpointRef == 0) {
+				uniqueFaces.add(u);
+				u.checkpointRef = uniqueFaces.size();
+			}
+			return u.checkpointRef;
+		}
+
+		int ref(Face f) {
+			if (f == null) {
+				return 0;
+			}
+			Face fPair = f.isReverse ? f.r : f;
+			if (fPair.checkpointRef == 0) {
+				facePairs.add(fPair);
+				fPair.checkpointRef = facePairs.size();
+			}
+			return 2 * (fPair.checkpointRef - 1) + (f.isReverse ? 1 : 0) + 1;
+		}
+
+		int ref(AbstractSimplex s) {
+			if (s == null) {
+				return 0;
+			}
+			if (s.checkpointRef == 0) {
+				simplices.add(s);
+				s.checkpointRef = simplices.size();
+			}
+			return s.checkpointRef;
+		}
+
+		void refFaceSide(Face f) {
+			ref(f.simplex);
+			ref(f.faceBoundary);
+			if (f.hNeighbors != null) {
+				for (Face hNeighbor : f.hNeighbors) {
+					ref(hNeighbor);
+				}
+			}
+			if (f.knownSimplices != null) {
+				for (AbstractSimplex s : f.knownSimplices) {
+					ref(s);
+				}
+			}
+		}
+
+		// discovers everything reachable from the objects discovered so far
+		void close() {
+			int uniqueFaceIdx = 0;
+			int facePairIdx = 0;
+			int simplexIdx = 0;
+			while (uniqueFaceIdx < uniqueFaces.size() || facePairIdx < facePairs.size()
+					|| simplexIdx < simplices.size()) {
+				while (uniqueFaceIdx < uniqueFaces.size()) {
+					UniqueFace u = uniqueFaces.get(uniqueFaceIdx++);
+					ref(u.faceStar);
+					if (u.rowFaces != null) {
+						for (Face f : u.rowFaces) {
+							ref(f);
+						}
+					}
+				}
+				while (facePairIdx < facePairs.size()) {
+					Face f = facePairs.get(facePairIdx++);
+					ref(f.uniqueFace);
+					refFaceSide(f);
+					refFaceSide(f.r);
+				}
+				while (simplexIdx < simplices.size()) {
+					AbstractSimplex s = simplices.get(simplexIdx++);
+					ref(s.original);
+					for (Face f : s.faces) {
+						ref(f);
+					}
+				}
+			}
+		}
+
+		// resets the ids, so the next checkpoint discovers all objects again
+		void clear() {
+			for (UniqueFace u : uniqueFaces) {
+				u.checkpointRef = 0;
+			}
+			for (Face f : facePairs) {
+				f.checkpointRef = 0;
+			}
+			for (AbstractSimplex s : simplices) {
+				s.checkpointRef = 0;
+			}
+		}
+	}
+
+	static void write(OnlineEnumerator online, File file) {
+		Enumerator enumerator = online.enumerator;
+		IncrementalTriangulator incTriangulator = online.incTriangulator;
+		StreamingAlphaFaceExtractor alphaExtractor = enumerator.alphaExtractor;
+		int pointCount = online.pointCount();
+
+		Graph graph = new Graph();
+		// write to a temporary file first, so a crash while writing doesn't
+		// destroy the previous checkpoint
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try {
+			for (Face f : incTriangulator.knownFaces) {
+				graph.ref(f);
+			}
+			for (int pIdx = 0; pIdx < pointCount; pIdx++) {
+				Point p = online.point(pIdx);
+				graph.ref(p.star.faceLatest);
+				graph.ref(p.star.simplexLatest);
+				for (Face f : p.ht.knownFaces) {
+					graph.ref(f);
+				}
+			}
+			if (alphaExtractor != null) {
+				for (UniqueFace u : alphaExtractor.openFaces) {
+					graph.ref(u);
+				}
+			}
+			graph.close();
+
+			Out out = new Out(new FileOutputStream(tmpFile));
+			try {
+				int flags = (enumerator.doAlphaBookkeeping ? FLAG_ALPHA_BOOKKEEPING : 0)
+						| (enumerator.cachePredicates ? FLAG_CACHE_PREDICATES : 0)
+						| (alphaExtractor != null ? FLAG_STREAM_ALPHA_FACES : 0);
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(enumerator.dim);
+				out.writeInt(flags);
+				out.writeInt(pointCount);
+				out.writeLong(online.simplexCount());
+				out.writeInt(graph.uniqueFaces.size());
+				out.writeInt(graph.facePairs.size());
+				out.writeInt(graph.simplices.size());
+
+				// allocation
+				for (int pIdx = 0; pIdx < pointCount; pIdx++) {
+					Point p = online.point(pIdx);
+					for (int idx = 0; idx < enumerator.dim; idx++) {
+						out.writeDouble(p.coord(idx));
+					}
+				}
+				for (UniqueFace u : graph.uniqueFaces) {
+					for (Point p : u.points) {
+						out.writeVarint(p.i);
+					}
+				}
+				for (Face f : graph.facePairs) {
+					out.writeVarint(graph.ref(f.uniqueFace));
+				}
+				for (AbstractSimplex s : graph.simplices) {
+					out.writeByte(s instanceof Simplex ? TYPE_SIMPLEX : TYPE_FACET);
+					out.writeInt(s.lastPreviousKillerIndex);
+					for (Face f : s.faces) {
+						out.writeVarint(graph.ref(f));
+					}
+				}
+
+				// links
+				for (UniqueFace u : graph.uniqueFaces) {
+					out.writeByte((u.picked ? 1 : 0) | (u.rectsFront != null ? 2 : 0));
+					out.writeVarint(graph.ref(u.faceStar));
+					writeFaces(out, graph, u.rowFaces);
+				}
+				for (Face f : graph.facePairs) {
+					writeFaceSide(out, graph, f);
+					writeFaceSide(out, graph, f.r);
+				}
+				for (AbstractSimplex s : graph.simplices) {
+					out.writeInt(s.firstSubsequentKillerIndex);
+					out.writeVarint(graph.ref(s.original));
+				}
+				for (Point p : incTriangulator.firstFacePoints) {
+					out.writeVarint(p == null ? 0 : p.i + 1);
+				}
+				out.writeInt(incTriangulator.size);
+				writeFaces(out, graph, incTriangulator.knownFaces);
+				for (int pIdx = 0; pIdx < pointCount; pIdx++) {
+					Point p = online.point(pIdx);
+					out.writeVarint(graph.ref(p.star.faceLatest));
+					out.writeVarint(graph.ref(p.star.simplexLatest));
+					out.writeInt(p.ht.size);
+					writeFaces(out, graph, p.ht.knownFaces);
+				}
+
+				if (alphaExtractor != null) {
+					out.writeLong(alphaExtractor.alphaFaceCount);
+					out.writeLong(alphaExtractor.extractedFaceCount);
+					out.writeVarint(alphaExtractor.openFaces.size());
+					for (UniqueFace u : alphaExtractor.openFaces) {
+						out.writeVarint(graph.ref(u));
+					}
+				}
+				out.writeInt(MAGIC);
+			} finally {
+				out.close();
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			graph.clear();
+		}
+	}
+
+	private static void writeFaceSide(Out out, Graph graph, Face f) throws IOException {
+		out.writeVarint(graph.ref(f.simplex));
+		out.writeVarint(graph.ref(f.faceBoundary));
+		if (f.hNeighbors == null) {
+			out.writeVarint(0);
+		} else {
+			out.writeVarint(f.hNeighbors.length);
+			for (Face hNeighbor : f.hNeighbors) {
+				out.writeVarint(graph.ref(hNeighbor));
+			}
+		}
+		if (f.knownSimplices == null) {
+			out.writeVarint(0);
+		} else {
+			out.writeVarint(f.knownSimplices.size() + 1);
+			for (AbstractSimplex s : f.knownSimplices) {
+				out.writeVarint(graph.ref(s));
+			}
+		}
+	}
+
+	// null is written as 0, other lists as size + 1
+	private static void writeFaces(Out out, Graph graph, ArrayList<Face> faces) throws IOException {
+		if (faces == null) {
+			out.writeVarint(0);
+			return;
+		}
+		out.writeVarint(faces.size() + 1);
+		for (Face f : faces) {
+			out.writeVarint(graph.ref(f));
+		}
+	}
+
+	static OnlineEnumerator read(File file, SimplexSink sink, AlphaFaceSink alphaSink, ForkJoinPool pool) {
+		try {
+			In in = new In(new FileInputStream(file));
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new RuntimeException(file + " is not an enumeration checkpoint");
+				}
+				int version = in.readInt();
+				if (version != VERSION) {
+					throw new RuntimeException("unsupported checkpoint version " + version);
+				}
+				int dim = in.readInt();
+				int flags = in.readInt();
+				int pointCount = in.readInt();
+				long simplexCount = in.readLong();
+				UniqueFace[] uniqueFaces = new UniqueFace[in.readInt()];
+				Face[] facePairs = new Face[in.readInt()];
+				AbstractSimplex[] simplices = new AbstractSimplex[in.readInt()];
+
+				Enumerator enumerator = new Enumerator(dim, (flags & FLAG_ALPHA_BOOKKEEPING) != 0,
+						(flags & FLAG_CACHE_PREDICATES) != 0);
+				if ((flags & FLAG_STREAM_ALPHA_FACES) != 0) {
+					if (alphaSink == null) {
+						throw new RuntimeException("checkpoint streams alpha faces, but no alpha face sink was given");
+					}
+					enumerator.streamAlphaFaces(alphaSink);
+				}
+
+				// allocation
+				PointStore store = new PointStore(dim, pointCount);
+				double[] v = new double[dim];
+				for (int pIdx = 0; pIdx < pointCount; pIdx++) {
+					for (int idx = 0; idx < dim; idx++) {
+						v[idx] = in.readDouble();
+					}
+					store.append(v);
+				}
+				ArrayList<Point> points = new ArrayList<Point>(pointCount);
+				for (int pIdx = 0; pIdx < pointCount; pIdx++) {
+					Point p = store.point(pIdx);
+					p.enumerator = enumerator;
+					new Star(p);
+					new HoleTriangulator(p);
+					points.add(p);
+				}
+				for (int id = 0; id < uniqueFaces.length; id++) {
+					Point[] facePoints = new Point[dim];
+					for (int idx = 0; idx < dim; idx++) {
+						facePoints[idx] = points.get(in.readVarint());
+					}
+					uniqueFaces[id] = new UniqueFace(facePoints);
+				}
+				for (int id = 0; id < facePairs.length; id++) {
+					facePairs[id] = new Face(uniqueFaces[in.readVarint() - 1]);
+				}
+				for (int id = 0; id < simplices.length; id++) {
+					int type = in.readByte();
+					int lastPreviousKillerIndex = in.readInt();
+					if (type == TYPE_SIMPLEX) {
+						Face[] faces = new Face[dim + 1];
+						for (int idx = 0; idx <= dim; idx++) {
+							faces[idx] = face(facePairs, in.readVarint());
+						}
+						simplices[id] = new Simplex(faces, lastPreviousKillerIndex);
+					} else {
+						simplices[id] = new Facet(face(facePairs, in.readVarint()), lastPreviousKillerIndex);
+					}
+				}
+
+				// links
+				for (UniqueFace u : uniqueFaces) {
+					int faceFlags = in.readByte();
+					u.picked = (faceFlags & 1) != 0;
+					if ((faceFlags & 2) == 0) {
+						u.rectsFront = null;
+						u.rectsBack = null;
+					}
+					u.faceStar = face(facePairs, in.readVarint());
+					u.rowFaces = readFaces(in, facePairs);
+				}
+				for (Face f : facePairs) {
+					readFaceSide(in, facePairs, simplices, f);
+					readFaceSide(in, facePairs, simplices, f.r);
+				}
+				for (AbstractSimplex s : simplices) {
+					s.firstSubsequentKillerIndex = in.readInt();
+					int originalRef = in.readVarint();
+					s.original = originalRef == 0 ? null : simplices[originalRef - 1];
+				}
+				IncrementalTriangulator incTriangulator = enumerator.createIncrementalTriangulator();
+				for (int idx = 0; idx < dim; idx++) {
+					int pRef = in.readVarint();
+					incTriangulator.firstFacePoints[idx] = pRef == 0 ? null : points.get(pRef - 1);
+				}
+				incTriangulator.size = in.readInt();
+				incTriangulator.knownFaces = readFaces(in, facePairs);
+				for (Point p : points) {
+					p.star.faceLatest = face(facePairs, in.readVarint());
+					int simplexLatestRef = in.readVarint();
+					p.star.simplexLatest = simplexLatestRef == 0 ? null : (Simplex) simplices[simplexLatestRef - 1];
+					p.ht.size = in.readInt();
+					p.ht.knownFaces = readFaces(in, facePairs);
+				}
+
+				StreamingAlphaFaceExtractor alphaExtractor = enumerator.alphaExtractor;
+				if (alphaExtractor != null) {
+					alphaExtractor.alphaFaceCount = in.readLong();
+					alphaExtractor.extractedFaceCount = in.readLong();
+					int openFaceCount = in.readVarint();
+					for (int idx = 0; idx < openFaceCount; idx++) {
+						alphaExtractor.openFaces.add(uniqueFaces[in.readVarint() - 1]);
+					}
+				}
+				if (in.readInt() != MAGIC) {
+					throw new RuntimeException("checkpoint " + file + " is corrupt");
+				}
+
+				OnlineEnumerator online = new OnlineEnumerator(enumerator, incTriangulator, store, points, simplexCount,
+						sink, pool);
+				for (Point p : points) {
+					p.ht.sink = online.sink;
+				}
+				return online;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void readFaceSide(In in, Face[] facePairs, AbstractSimplex[] simplices, Face f)
+			throws IOException {
+		int simplexRef = in.readVarint();
+		f.simplex = simplexRef == 0 ? null : simplices[simplexRef - 1];
+		f.faceBoundary = face(facePairs, in.readVarint());
+		int hNeighborCount = in.readVarint();
+		if (hNeighborCount > 0) {
+			f.hNeighbors = new Face[hNeighborCount];
+			for (int idx = 0; idx < hNeighborCount; idx++) {
+				f.hNeighbors[idx] = face(facePairs, in.readVarint());
+			}
+		}
+		int knownSimplexCount = in.readVarint() - 1;
+		if (knownSimplexCount >= 0) {
+			f.knownSimplices = new ArrayList<AbstractSimplex>(Math.max(knownSimplexCount, 2));
+			for (int idx = 0; idx < knownSimplexCount; idx++) {
+				f.knownSimplices.add(simplices[in.readVarint() - 1]);
+			}
+		}
+	}
+
+	private static ArrayList<Face> readFaces(In in, Face[] facePairs) throws IOException {
+		int size = in.readVarint() - 1;
+		if (size < 0) {
+			return null;
+		}
+		ArrayList<Face> faces = new ArrayList<Face>(Math.max(size, 2));
+		for (int idx = 0; idx < size; idx++) {
+			faces.add(face(facePairs, in.readVarint()));
+		}
+		return faces;
+	}
+
+	private static Face face(Face[] facePairs, int ref) {
+		if (ref == 0) {
+			return null;
+		}
+		Face f = facePairs[(ref - 1) >>> 1];
+		return ((ref - 1) & 1) == 0 ? f : f.r;
+	}
+
+	// buffered little endian output, unsynchronized unlike DataOutputStream
+	private static class Out {
+		private final OutputStream stream;
+		private final byte[] buf = new byte[1 << 16];
+		private int pos = 0;
+
+		Out(OutputStream stream) {
+			this.stream = stream;
+		}
+
+		void writeByte(int val) throws IOException {
+			if (pos == buf.length) {
+				flush();
+			}
+			buf[pos++] = (byte) val;
+		}
+
+		void writeInt(int val) throws IOException {
+			for (int shift = 0; shift < 32; shift += 8) {
+				writeByte(val >>> shift);
+			}
+		}
+
+		void writeLong(long val) throws IOException {
+			for (int shift = 0; shift < 64; shift += 8) {
+				writeByte((int) (val >>> shift));
+			}
+		}
+
+		void writeDouble(double val) throws IOException {
+			writeLong(Double.doubleToRawLongBits(val));
+		}
+
+		// non-negative values only
+		void writeVarint(int val) throws IOException {
+			while ((val & ~0x7F) != 0) {
+				writeByte((val & 0x7F) | 0x80);
+				val >>>= 7;
+			}
+			writeByte(val);
+		}
+
+		private void flush() throws IOException {
+			stream.write(buf, 0, pos);
+			pos = 0;
+		}
+
+		void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				stream.close();
+			}
+		}
+	}
+
+	private static class In {
+		private final InputStream stream;
+		private final byte[] buf = new byte[1 << 16];
+		private int pos = 0;
+		private int limit = 0;
+
+		In(InputStream stream) {
+			this.stream = stream;
+		}
+
+		int readByte() throws IOException {
+			if (pos == limit) {
+				limit = stream.read(buf);
+				pos = 0;
+				if (limit <= 0) {
+					limit = 0;
+					throw new RuntimeException("unexpected end of checkpoint");
+				}
+			}
+			return buf[pos++];
+		}
+
+		int readInt() throws IOException {
+			int val = 0;
+			for (int shift = 0; shift < 32; shift += 8) {
+				val |= (readByte() & 0xFF) << shift;
+			}
+			return val;
+		}
+
+		long readLong() throws IOException {
+			long val = 0;
+			for (int shift = 0; shift < 64; shift += 8) {
+				val |= (long) (readByte() & 0xFF) << shift;
+			}
+			return val;
+		}
+
+		double readDouble() throws IOException {
+			return Double.longBitsToDouble(readLong());
+		}
+
+		int readVarint() throws IOException {
+			int val = 0;
+			int shift = 0;
+			while (true) {
+				int b = readByte();
+				val |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return val;
+				}
+				shift += 7;
+			}
+		}
+
+		void close() throws IOException {
+			stream.close();
+		}
+	}
+
+}
@@ -0,0 +1,359 @@
+package delaunayKD;
+
+import java.lang.management.ManagementFactory;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Counters of an enumeration's hot paths, see Enumerator.enableMetrics().
+// Counters are updated from the enumerating threads (LongAdder, so parallel
+// mode doesn't contend on them) and read via snapshots, which may be taken
+// periodically and exposed over JMX (see register()).
+public class EnumerationMetrics implements EnumerationMetricsMBean {
+
+	// immutable copy of all counters at some point in time
+	public static class Snapshot {
+		public final long time;
+		public final long pointsInserted;
+		public final long orientationTests;
+		public final long insphereTests;
+		public final long cavities;
+		public final long simplicesDestroyed;
+		public final long maxCavitySize;
+		public final long starUpdates;
+		public final long holeTriangulationUpdates;
+		public final long holeTriangulationSizeSum;
+		public final long maxHoleTriangulationSize;
+		public final long locateCalls;
+		public final long locateRowSteps;
+		public final long maxLocateRowSteps;
+		// see EnumerationMetrics.rowBucket()
+		public final long[] simplicesPerRowBucket;
+		public final long locateNanos;
+		public final long incrementalInsertionNanos;
+		public final long starAndHoleUpdateNanos;
+
+		private Snapshot(EnumerationMetrics metrics) {
+			time = System.currentTimeMillis();
+			pointsInserted = metrics.pointsInserted.sum();
+			orientationTests = metrics.orientationTests.sum();
+			insphereTests = metrics.insphereTests.sum();
+			cavities = metrics.cavities.sum();
+			simplicesDestroyed = metrics.simplicesDestroyed.sum();
+			maxCavitySize = metrics.maxCavitySize.get();
+			starUpdates = metrics.starUpdates.sum();
+			holeTriangulationUpdates = metrics.holeTriangulationUpdates.sum();
+			holeTriangulationSizeSum = metrics.holeTriangulationSizeSum.sum();
+			maxHoleTriangulationSize = metrics.maxHoleTriangulationSize.get();
+			locateCalls = metrics.locateCalls.sum();
+			locateRowSteps = metrics.locateRowSteps.sum();
+			maxLocateRowSteps = metrics.maxLocateRowSteps.get();
+			simplicesPerRowBucket = new long[ROW_BUCKETS];
+			for (int bucket = 0; bucket < ROW_BUCKETS; bucket++) {
+				simplicesPerRowBucket[bucket] = metrics.simplicesPerRowBucket[bucket].sum();
+			}
+			locateNanos = metrics.locateNanos.sum();
+			incrementalInsertionNanos = metrics.incrementalInsertionNanos.sum();
+			starAndHoleUpdateNanos = metrics.starAndHoleUpdateNanos.sum();
+		}
+	}
+
+	private final LongAdder pointsInserted = new LongAdder();
+	private final LongAdder orientationTests = new LongAdder();
+	private final LongAdder insphereTests = new LongAdder();
+	// cavities: excavations of a triangulation (row 0 or hole triangulation)
+	private final LongAdder cavities = new LongAdder();
+	private final LongAdder simplicesDestroyed = new LongAdder();
+	private final AtomicLong maxCavitySize = new AtomicLong();
+	private final LongAdder starUpdates = new LongAdder();
+	// size: alive simplices/facets of a hole triangulation after an update
+	private final LongAdder holeTriangulationUpdates = new LongAdder();
+	private final LongAdder holeTriangulationSizeSum = new LongAdder();
+	private final AtomicLong maxHoleTriangulationSize = new AtomicLong();
+	// row steps: hole triangulations walked through by locate() before
+	// reaching row 0
+	private final LongAdder locateCalls = new LongAdder();
+	private final LongAdder locateRowSteps = new LongAdder();
+	private final AtomicLong maxLocateRowSteps = new AtomicLong();
+	// simplices/facets emitted per row bucket. a fixed number of buckets, so
+	// emitting doesn't synchronize and snapshots don't grow with the rows.
+	private static final int ROW_BUCKETS = 32;
+	private final LongAdder[] simplicesPerRowBucket = new LongAdder[ROW_BUCKETS];
+	// cumulative time per phase of the point insertions
+	private final LongAdder locateNanos = new LongAdder();
+	private final LongAdder incrementalInsertionNanos = new LongAdder();
+	private final LongAdder starAndHoleUpdateNanos = new LongAdder();
+
+	private volatile Snapshot snapshot = null;
+	private Timer snapshotTimer = null;
+	private ObjectName objectName = null;
+
+	public EnumerationMetrics() {
+		for (int bucket = 0; bucket < ROW_BUCKETS; bucket++) {
+			simplicesPerRowBucket[bucket] = new LongAdder();
+		}
+	}
+
+	public void pointInserted() {
+		pointsInserted.increment();
+	}
+
+	public void orientationTest() {
+		orientationTests.increment();
+	}
+
+	public void insphereTest() {
+		insphereTests.increment();
+	}
+
+	public void cavity(int destroyedCount) {
+		cavities.increment();
+		simplicesDestroyed.add(destroyedCount);
+		updateMax(maxCavitySize, destroyedCount);
+	}
+
+	public void starUpdate() {
+		starUpdates.increment();
+	}
+
+	public void holeTriangulationUpdate(int size) {
+		holeTriangulationUpdates.increment();
+		holeTriangulationSizeSum.add(size);
+		updateMax(maxHoleTriangulationSize, size);
+	}
+
+	public void locate(int rowSteps, long nanos) {
+		locateCalls.increment();
+		locateRowSteps.add(rowSteps);
+		updateMax(maxLocateRowSteps, rowSteps);
+		locateNanos.add(nanos);
+	}
+
+	public void incrementalInsertion(long nanos) {
+		incrementalInsertionNanos.add(nanos);
+	}
+
+	public void starAndHoleUpdates(long nanos) {
+		starAndHoleUpdateNanos.add(nanos);
+	}
+
+	// row 0 is the incremental construction, row r > 0 the hole triangulation
+	// of point r - 1
+	public void simplexEmitted(int row) {
+		simplicesPerRowBucket[rowBucket(row)].increment();
+	}
+
+	// rows are bucketed logarithmically: bucket 0 is row 0, bucket b > 0 holds
+	// rows 2^(b-1), ..., 2^b - 1
+	public static int rowBucket(int row) {
+		return 32 - Integer.numberOfLeadingZeros(row);
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long curr = max.get();
+		while (value > curr && !max.compareAndSet(curr, value)) {
+			curr = max.get();
+		}
+	}
+
+	// copy of the current counters
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	// the snapshot JMX attributes are read from. without periodic snapshots,
+	// a fresh one is taken for every read.
+	private Snapshot currentSnapshot() {
+		Snapshot snapshotCurr = snapshot;
+		return snapshotCurr != null ? snapshotCurr : snapshot();
+	}
+
+	// registers this as MBean delaunayKD:type=EnumerationMetrics,name=<name>
+	// with the platform MBean server. if snapshotPeriodMillis > 0, the
+	// snapshot read by JMX is refreshed at that period by a daemon thread.
+	public synchronized ObjectName register(String name, long snapshotPeriodMillis) {
+		if (objectName != null) {
+			throw new RuntimeException("metrics are already registered as " + objectName);
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			objectName = new ObjectName("delaunayKD:type=EnumerationMetrics,name=" + ObjectName.quote(name));
+			server.registerMBean(this, objectName);
+		} catch (JMException e) {
+			objectName = null;
+			throw new RuntimeException(e);
+		}
+		if (snapshotPeriodMillis > 0) {
+			snapshot = snapshot();
+			snapshotTimer = new Timer("enumeration metrics snapshots", true);
+			snapshotTimer.scheduleAtFixedRate(new TimerTask() {
+				@Override
+				public void run() {
+					snapshot = snapshot();
+				}
+			}, snapshotPeriodMillis, snapshotPeriodMillis);
+		}
+		return objectName;
+	}
+
+	public synchronized void unregister() {
+		if (snapshotTimer != null) {
+			snapshotTimer.cancel();
+			snapshotTimer = null;
+			snapshot = null;
+		}
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (JMException e) {
+				throw new RuntimeException(e);
+			} finally {
+				objectName = null;
+			}
+		}
+	}
+
+	@Override
+	public long getSnapshotTime() {
+		return currentSnapshot().time;
+	}
+
+	@Override
+	public long getPointsInserted() {
+		return currentSnapshot().pointsInserted;
+	}
+
+	@Override
+	public long getOrientationTests() {
+		return currentSnapshot().orientationTests;
+	}
+
+	@Override
+	public long getInsphereTests() {
+		return currentSnapshot().insphereTests;
+	}
+
+	@Override
+	public long getCavities() {
+		return currentSnapshot().cavities;
+	}
+
+	@Override
+	public long getSimplicesDestroyed() {
+		return currentSnapshot().simplicesDestroyed;
+	}
+
+	@Override
+	public double getMeanCavitySize() {
+		Snapshot snapshotCurr = currentSnapshot();
+		return snapshotCurr.cavities == 0 ? 0.0 : (double) snapshotCurr.simplicesDestroyed / snapshotCurr.cavities;
+	}
+
+	@Override
+	public long getMaxCavitySize() {
+		return currentSnapshot().maxCavitySize;
+	}
+
+	@Override
+	public long getStarUpdates() {
+		return currentSnapshot().starUpdates;
+	}
+
+	@Override
+	public long getHoleTriangulationUpdates() {
+		return currentSnapshot().holeTriangulationUpdates;
+	}
+
+	@Override
+	public double getMeanHoleTriangulationSize() {
+		Snapshot snapshotCurr = currentSnapshot();
+		return snapshotCurr.holeTriangulationUpdates == 0 ? 0.0
+				: (double) snapshotCurr.holeTriangulationSizeSum / snapshotCurr.holeTriangulationUpdates;
+	}
+
+	@Override
+	public long getMaxHoleTriangulationSize() {
+		return currentSnapshot().maxHoleTriangulationSize;
+	}
+
+	@Override
+	public long getLocateCalls() {
+		return currentSnapshot().locateCalls;
+	}
+
+	@Override
+	public long getLocateRowSteps() {
+		return currentSnapshot().locateRowSteps;
+	}
+
+	@Override
+	public long getMaxLocateRowSteps() {
+		return currentSnapshot().maxLocateRowSteps;
+	}
+
+	@Override
+	public long getSimplicesEmitted() {
+		long sum = 0;
+		for (long count : currentSnapshot().simplicesPerRowBucket) {
+			sum += count;
+		}
+		return sum;
+	}
+
+	@Override
+	public long[] getSimplicesPerRowBucket() {
+		return currentSnapshot().simplicesPerRowBucket.clone();
+	}
+
+	@Override
+	public long getLocateMillis() {
+		return currentSnapshot().locateNanos / 1000000;
+	}
+
+	@Override
+	public long getIncrementalInsertionMillis() {
+		return currentSnapshot().incrementalInsertionNanos / 1000000;
+	}
+
+	@Override
+	public long getStarAndHoleUpdateMillis() {
+		return currentSnapshot().starAndHoleUpdateNanos / 1000000;
+	}
+
+	@Override
+	public void takeSnapshot() {
+		if (snapshot != null) {
+			snapshot = snapshot();
+		}
+	}
+
+	@Override
+	public void reset() {
+		pointsInserted.reset();
+		orientationTests.reset();
+		insphereTests.reset();
+		cavities.reset();
+		simplicesDestroyed.reset();
+		maxCavitySize.set(0);
+		starUpdates.reset();
+		holeTriangulationUpdates.reset();
+		holeTriangulationSizeSum.reset();
+		maxHoleTriangulationSize.set(0);
+		locateCalls.reset();
+		locateRowSteps.reset();
+		maxLocateRowSteps.set(0);
+		for (LongAdder count : simplicesPerRowBucket) {
+			count.reset();
+		}
+		locateNanos.reset();
+		incrementalInsertionNanos.reset();
+		starAndHoleUpdateNanos.reset();
+		takeSnapshot();
+	}
+
+}
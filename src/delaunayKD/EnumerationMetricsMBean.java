@@ -0,0 +1,56 @@
+package delaunayKD;
+
+// JMX view of EnumerationMetrics. attributes are read from the latest snapshot
+// (see EnumerationMetrics.register), so they are consistent with each other.
+public interface EnumerationMetricsMBean {
+
+	// time of the snapshot, in milliseconds since the epoch
+	public long getSnapshotTime();
+
+	public long getPointsInserted();
+
+	public long getOrientationTests();
+
+	public long getInsphereTests();
+
+	public long getCavities();
+
+	public long getSimplicesDestroyed();
+
+	public double getMeanCavitySize();
+
+	public long getMaxCavitySize();
+
+	public long getStarUpdates();
+
+	public long getHoleTriangulationUpdates();
+
+	public double getMeanHoleTriangulationSize();
+
+	public long getMaxHoleTriangulationSize();
+
+	public long getLocateCalls();
+
+	public long getLocateRowSteps();
+
+	public long getMaxLocateRowSteps();
+
+	public long getSimplicesEmitted();
+
+	// index b: simplices/facets emitted by the rows in bucket b, i.e. row 0
+	// (the incremental construction) for b = 0, and the hole triangulations
+	// of points r - 1 for rows r = 2^(b-1), ..., 2^b - 1 otherwise
+	public long[] getSimplicesPerRowBucket();
+
+	public long getLocateMillis();
+
+	public long getIncrementalInsertionMillis();
+
+	public long getStarAndHoleUpdateMillis();
+
+	// refreshes the snapshot now
+	public void takeSnapshot();
+
+	public void reset();
+
+}
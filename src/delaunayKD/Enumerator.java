@@ -0,0 +1,113 @@
+package delaunayKD;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import delaunayKD.geometry.AbstractSimplex;
+import delaunayKD.geometry.Point;
+import delaunayKD.triangulator.IncrementalTriangulator;
+
+// Context of a single enumeration: dimension, options and traversal marks.
+// Like their stars and hole triangulations, points belong to the enumerator
+// of the run they are inserted in, and all geometry reaches the context
+// through its points. Independent enumerations (e.g. a 2D and a 3D run) can
+// therefore run concurrently, e.g. on a shared thread pool.
+public class Enumerator {
+
+	public final int dim;
+
+	// whether to do bookkeeping for computation of temporal alpha-shape
+	public final boolean doAlphaBookkeeping;
+
+	// whether to cache orientation tests per unique face and insphere tests
+	// per simplex, trading memory for O(dim) predicates
+	public final boolean cachePredicates;
+
+	// counters of the hot paths, null unless enabled via enableMetrics()
+	public EnumerationMetrics metrics = null;
+
+	// extracts the temporal alpha-shape while enumerating, null unless
+	// enabled via streamAlphaFaces()
+	public StreamingAlphaFaceExtractor alphaExtractor = null;
+
+	// search epochs: an object is marked in a search iff its stamp equals the
+	// search's epoch, so marks never need to be reset. every locate and hole
+	// triangulation update takes an epoch, so a long run would wrap an int,
+	// and objects stamped 2^32 epochs earlier would look marked. a long
+	// doesn't wrap.
+	private final AtomicLong markEpoch = new AtomicLong(0);
+
+	public Enumerator(int dim) {
+		this(dim, false, false);
+	}
+
+	public Enumerator(int dim, boolean doAlphaBookkeeping, boolean cachePredicates) {
+		if (dim < 2) {
+			throw new RuntimeException("dimension must be at least 2");
+		}
+		this.dim = dim;
+		this.doAlphaBookkeeping = doAlphaBookkeeping;
+		this.cachePredicates = cachePredicates;
+	}
+
+	// context using the static defaults in AllSimplicesFinder
+	public static Enumerator fromDefaults() {
+		return new Enumerator(AllSimplicesFinder.DIM, AllSimplicesFinder.doAlphaBookkeeping,
+				AllSimplicesFinder.cachePredicates);
+	}
+
+	// returns a fresh epoch for a search, never 0 (the stamp of unmarked
+	// objects)
+	public long nextMarkEpoch() {
+		return markEpoch.incrementAndGet();
+	}
+
+	// enables metrics collection. must be called before the enumeration
+	// starts.
+	public EnumerationMetrics enableMetrics() {
+		if (metrics == null) {
+			metrics = new EnumerationMetrics();
+		}
+		return metrics;
+	}
+
+	// extracts the temporal alpha-shape during the enumeration rather than
+	// afterwards, handing its cuboids to sink as they become final (see
+	// StreamingAlphaFaceExtractor). requires alpha bookkeeping, must be
+	// called before the enumeration starts.
+	public StreamingAlphaFaceExtractor streamAlphaFaces(AlphaFaceSink sink) {
+		if (!doAlphaBookkeeping) {
+			throw new RuntimeException("streaming alpha faces requires alpha bookkeeping");
+		}
+		alphaExtractor = new StreamingAlphaFaceExtractor(sink);
+		return alphaExtractor;
+	}
+
+	// whether triangulators keep lists of their faces for AlphaFaceExtractor.
+	// not needed when streaming, which would otherwise keep all dead faces
+	// (and through them, dead simplices) reachable.
+	public boolean recordKnownFaces() {
+		return doAlphaBookkeeping && alphaExtractor == null;
+	}
+
+	public IncrementalTriangulator createIncrementalTriangulator() {
+		return new IncrementalTriangulator(this);
+	}
+
+	public ArrayList<AbstractSimplex> findAllSimplices(ArrayList<Point> points) {
+		return AllSimplicesFinder.findAllSimplices(points, createIncrementalTriangulator());
+	}
+
+	public void findAllSimplices(ArrayList<Point> points, SimplexSink sink, ForkJoinPool pool) {
+		AllSimplicesFinder.findAllSimplices(points, createIncrementalTriangulator(), sink, pool);
+	}
+
+	// see AllSimplicesFinder.findAllSimplicesInWindows
+	public void findAllSimplicesInWindows(ArrayList<Point> points, int maxWindowLength, SimplexSink sink,
+			ForkJoinPool pool) {
+		AllSimplicesFinder.findAllSimplicesInWindows(points, this, maxWindowLength,
+				(int) Math.min(Integer.MAX_VALUE / 4, 2L * maxWindowLength), sink, pool);
+	}
+
+}
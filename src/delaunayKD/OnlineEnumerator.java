@@ -0,0 +1,167 @@
+package delaunayKD;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import delaunayKD.geometry.AbstractSimplex;
+import delaunayKD.geometry.Point;
+import delaunayKD.geometry.PointStore;
+import delaunayKD.triangulator.ArrayStack;
+import delaunayKD.triangulator.IncrementalTriangulator;
+
+// Enumeration of a sequence whose points arrive one at a time, e.g. from a
+// live stream. Each append() inserts a single point into all rows, i.e. runs
+// the same step findAllSimplices runs per point, so the latency of an append
+// is that point's share of a batch run:
+//
+// OnlineEnumerator online = new OnlineEnumerator(new Enumerator(3));
+// while (...) {
+// online.append(coords);
+// ... online.found, online.killed ...
+// }
+//
+// After every append, found holds the simplices found while inserting the
+// point and killed those whose firstSubsequentKillerIndex was just set (a
+// simplex may be in both). Alternatively, a sink receives them as they occur.
+public class OnlineEnumerator {
+
+	public final Enumerator enumerator;
+	public final IncrementalTriangulator incTriangulator;
+
+	// simplices found/killed by the last append
+	public final ArrayList<AbstractSimplex> found = new ArrayList<AbstractSimplex>();
+	public final ArrayList<AbstractSimplex> killed = new ArrayList<AbstractSimplex>();
+
+	// coordinates of all points appended so far
+	public final PointStore store;
+	// all points appended so far, points.get(i).i == i
+	private final ArrayList<Point> points;
+	final SimplexSink sink;
+	private final ForkJoinPool pool;
+	private final ArrayStack<AbstractSimplex> simplexStack = new ArrayStack<AbstractSimplex>();
+	private long simplexCount;
+	private boolean finished = false;
+
+	public OnlineEnumerator(Enumerator enumerator) {
+		this(enumerator, null, null);
+	}
+
+	// sink (may be null) receives every simplex as it is found and again once
+	// it is killed. if pool is given, insertions run in parallel (see
+	// AllSimplicesFinder.findAllSimplices).
+	public OnlineEnumerator(Enumerator enumerator, SimplexSink sink, ForkJoinPool pool) {
+		this(enumerator, enumerator.createIncrementalTriangulator(), new PointStore(enumerator.dim),
+				new ArrayList<Point>(), 0, sink, pool);
+	}
+
+	// continues an enumeration of the given points, see resume()
+	OnlineEnumerator(Enumerator enumerator, IncrementalTriangulator incTriangulator, PointStore store,
+			ArrayList<Point> points, long simplexCount, final SimplexSink sink, ForkJoinPool pool) {
+		this.enumerator = enumerator;
+		this.incTriangulator = incTriangulator;
+		this.store = store;
+		this.points = points;
+		this.simplexCount = simplexCount;
+		this.pool = pool;
+		SimplexSink collectingSink = new SimplexSink() {
+			@Override
+			public void simplexFound(AbstractSimplex simplex) {
+				found.add(simplex);
+				if (sink != null) {
+					sink.simplexFound(simplex);
+				}
+			}
+
+			@Override
+			public void simplexKilled(AbstractSimplex simplex) {
+				killed.add(simplex);
+				if (sink != null) {
+					sink.simplexKilled(simplex);
+				}
+			}
+		};
+		// simplices are destroyed from several threads in parallel mode
+		this.sink = pool != null ? AllSimplicesFinder.synchronizedSink(collectingSink) : collectingSink;
+		incTriangulator.sink = this.sink;
+	}
+
+	// restores an enumeration from a checkpoint written by checkpoint(). it
+	// continues bit-identically, i.e. appending the same points yields the
+	// same simplices as the uninterrupted enumeration. simplices found before
+	// the checkpoint are not reported again, but those still alive are
+	// reported to sink once they are killed. alphaSink is required if the
+	// checkpointed enumeration streamed alpha faces (see
+	// Enumerator.streamAlphaFaces), and receives the alpha faces extracted
+	// after the checkpoint.
+	public static OnlineEnumerator resume(File file, SimplexSink sink, AlphaFaceSink alphaSink, ForkJoinPool pool) {
+		return EnumerationCheckpoint.read(file, sink, alphaSink, pool);
+	}
+
+	public static OnlineEnumerator resume(File file) {
+		return resume(file, null, null, null);
+	}
+
+	// writes the state of the enumeration to file, so it can be continued
+	// from here after a crash (see resume()). the file is replaced atomically,
+	// so a crash while writing leaves the previous checkpoint intact. takes
+	// time linear in the size of the state, which is far less than
+	// recomputing it.
+	public void checkpoint(File file) {
+		if (finished) {
+			throw new RuntimeException("enumeration is finished");
+		}
+		EnumerationCheckpoint.write(this, file);
+	}
+
+	// inserts the next point with the given coordinates (copied to store) and
+	// returns it. its index is the number of points appended before.
+	public Point append(double... coords) {
+		if (finished) {
+			throw new RuntimeException("enumeration is finished");
+		}
+		if (coords.length != enumerator.dim) {
+			throw new RuntimeException("expected " + enumerator.dim + " coordinates, got " + coords.length);
+		}
+		found.clear();
+		killed.clear();
+		Point pNew = store.point(store.append(coords));
+		points.add(pNew);
+		simplexCount += AllSimplicesFinder.insertPoint(points, points.size() - 1, incTriangulator, sink, pool,
+				simplexStack);
+		return pNew;
+	}
+
+	// ends the enumeration. extracts the alpha faces still open if alpha faces
+	// are streamed (see Enumerator.streamAlphaFaces), no more points can be
+	// appended afterwards.
+	public void finish() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		if (enumerator.alphaExtractor != null) {
+			enumerator.alphaExtractor.finish();
+		}
+	}
+
+	public int pointCount() {
+		return points.size();
+	}
+
+	public Point point(int index) {
+		return points.get(index);
+	}
+
+	// the points appended so far, e.g. for AlphaFaceExtractor. must not be
+	// modified.
+	public ArrayList<Point> points() {
+		return points;
+	}
+
+	// number of simplices/facets found so far
+	public long simplexCount() {
+		return simplexCount;
+	}
+
+}
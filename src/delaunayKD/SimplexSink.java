@@ -0,0 +1,18 @@
+package delaunayKD;
+
+import delaunayKD.geometry.AbstractSimplex;
+
+// receives simplices and facets as they are found during enumeration, so
+// results can be streamed to consumers without collecting them in one list
+public interface SimplexSink {
+
+	// called once per simplex when it is taken off the simplex stack. its
+	// lastPreviousKillerIndex is final at this point, its
+	// firstSubsequentKillerIndex may not be known yet
+	public void simplexFound(AbstractSimplex simplex);
+
+	// called once per simplex when its firstSubsequentKillerIndex is set,
+	// always after simplexFound was called for that simplex
+	public void simplexKilled(AbstractSimplex simplex);
+
+}
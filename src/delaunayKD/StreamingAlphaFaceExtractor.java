@@ -0,0 +1,151 @@
+package delaunayKD;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import delaunayKD.alpha.QueryRectAlphaHalfFace;
+import delaunayKD.geometry.AbstractSimplex;
+import delaunayKD.geometry.Face;
+import delaunayKD.geometry.Point;
+import delaunayKD.geometry.UniqueFace;
+
+// Extracts the temporal alpha-shape during enumeration instead of afterwards
+// (see Enumerator.streamAlphaFaces). A face is part of the triangulation of
+// [i, j] only if it is part of that of [i, j - 1], so once all simplices
+// containing a face are dead after an insertion, no more simplices will ever
+// attach to it. Its alpha faces are final at that point: they are extracted
+// as in AlphaFaceExtractor and handed to the sink, and the face's
+// bookkeeping (known simplices and query rects) is released. Faces still
+// alive when the enumeration ends are extracted then.
+public class StreamingAlphaFaceExtractor {
+
+	private final AlphaFaceSink sink;
+
+	// faces with known simplices which weren't extracted yet
+	final LinkedHashSet<UniqueFace> openFaces = new LinkedHashSet<UniqueFace>();
+	// faces which lost a simplex during the current insertion, guarded by
+	// this (simplices are killed from several threads in parallel mode)
+	private final LinkedHashSet<UniqueFace> pendingFaces = new LinkedHashSet<UniqueFace>();
+
+	private final ArrayList<QueryRectAlphaHalfFace> alphaFaces = new ArrayList<QueryRectAlphaHalfFace>();
+	long alphaFaceCount = 0;
+	long extractedFaceCount = 0;
+
+	StreamingAlphaFaceExtractor(AlphaFaceSink sink) {
+		this.sink = sink;
+	}
+
+	// number of alpha faces handed to the sink so far
+	public long alphaFaceCount() {
+		return alphaFaceCount;
+	}
+
+	// number of faces whose bookkeeping is still held
+	public int openFaceCount() {
+		return openFaces.size();
+	}
+
+	// number of faces extracted and released so far
+	public long extractedFaceCount() {
+		return extractedFaceCount;
+	}
+
+	// remembers the row instances of the faces of a newly found simplex.
+	// called before the simplex is added to its faces' known simplices.
+	void simplexFound(AbstractSimplex simplex) {
+		for (Face f : simplex.faces) {
+			UniqueFace u = f.uniqueFace;
+			if (u.picked) {
+				throw new RuntimeException("simplex found on face " + f + " after its alpha faces were extracted");
+			}
+			if (u.rowFaces == null) {
+				u.rowFaces = new ArrayList<Face>(2);
+				openFaces.add(u);
+			}
+			if (!containsFaceOrReverse(u.rowFaces, f)) {
+				u.rowFaces.add(f);
+			}
+		}
+	}
+
+	// called by the triangulators when they destroy a simplex
+	public synchronized void simplexKilled(AbstractSimplex simplex) {
+		for (Face f : simplex.faces) {
+			pendingFaces.add(f.uniqueFace);
+		}
+	}
+
+	// extracts the faces which became final with the insertion of pNew. must
+	// be called once all simplices of that insertion were found.
+	synchronized void pointInserted(Point pNew) {
+		for (UniqueFace u : pendingFaces) {
+			if (u.rowFaces != null && !isAlive(u)) {
+				extract(u);
+				openFaces.remove(u);
+			}
+		}
+		pendingFaces.clear();
+	}
+
+	// extracts all remaining faces once the enumeration is complete
+	synchronized void finish() {
+		for (UniqueFace u : openFaces) {
+			extract(u);
+		}
+		openFaces.clear();
+		pendingFaces.clear();
+	}
+
+	private static boolean containsFaceOrReverse(ArrayList<Face> faces, Face f) {
+		for (Face face : faces) {
+			if (face == f || face == f.r) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// whether some row still has an alive simplex on either side of u. per
+	// row and side, simplices are known in order of creation and only the
+	// latest one can be alive.
+	private static boolean isAlive(UniqueFace u) {
+		for (Face f : u.rowFaces) {
+			if (isLatestAlive(f) || isLatestAlive(f.r)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isLatestAlive(Face f) {
+		return f.hasKnownSimplices() && f.knownSimplices.get(f.knownSimplices.size() - 1).isAlive();
+	}
+
+	// registers u's simplices with it (rows in the order of the sequential
+	// registration), extracts its alpha faces and releases the bookkeeping
+	private void extract(UniqueFace u) {
+		for (Face f : u.rowFaces) {
+			AlphaFaceExtractor.registerSimplices(f);
+		}
+		Collections.sort(u.rectsFront, AlphaFaceExtractor.ROW_ORDER);
+		Collections.sort(u.rectsBack, AlphaFaceExtractor.ROW_ORDER);
+		AlphaFaceExtractor.extractAlphaFaces(u, alphaFaces);
+		for (QueryRectAlphaHalfFace alphaFace : alphaFaces) {
+			sink.alphaFaceFound(alphaFace);
+		}
+		alphaFaceCount += alphaFaces.size();
+		alphaFaces.clear();
+
+		for (Face f : u.rowFaces) {
+			f.knownSimplices = null;
+			f.r.knownSimplices = null;
+		}
+		u.rowFaces = null;
+		u.rectsFront = null;
+		u.rectsBack = null;
+		u.picked = true;
+		extractedFaceCount++;
+	}
+
+}
@@ -1,12 +1,12 @@
 package delaunayKD.geometry;
 
-import java.util.ArrayList;
-
 public abstract class AbstractSimplex {
 
-	// for search algorithms
-	private boolean marked = false;
-	private static ArrayList<AbstractSimplex> markedSimplices = new ArrayList<AbstractSimplex>();
+	// for search algorithms: epoch of the last search which marked this
+	private long markEpoch = 0;
+
+	// id + 1 of this simplex while a checkpoint is written, 0 otherwise
+	public int checkpointRef = 0;
 
 	// the bounding faces of this simplex
 	// convention: the pre-existing face of new simplices must be at index 0
@@ -34,20 +34,12 @@ public abstract class AbstractSimplex {
 		return firstSubsequentKillerIndex == Integer.MAX_VALUE;
 	}
 
-	public void mark() {
-		marked = true;
-		markedSimplices.add(this);
+	public void mark(long epoch) {
+		markEpoch = epoch;
 	}
 
-	public boolean isMarked() {
-		return marked;
-	}
-
-	static public void unmarkAll() {
-		for (AbstractSimplex simplex : markedSimplices) {
-			simplex.marked = false;
-		}
-		markedSimplices.clear();
+	public boolean isMarked(long epoch) {
+		return markEpoch == epoch;
 	}
 
 	public Point maxPoint() {
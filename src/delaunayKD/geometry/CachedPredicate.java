@@ -0,0 +1,180 @@
+package delaunayKD.geometry;
+
+import delaunayKD.misc.UtilityMethods;
+
+// The orientation test of a face is an affine function of the query point q,
+// and the insphere test of a simplex is a linear function of q and |q|^2
+// (lifting to the paraboloid). Both are cached here as coefficients w.r.t.
+// s = q - p0, where p0 is the first point of the face, so each test costs
+// O(dim). Results which are within the error bound of the cached coefficients
+// fall back to the determinant based predicates.
+public class CachedPredicate {
+
+	private static final double EPS = Math.ulp(1.0) / 2;
+
+	// orientation: n with orientation(q) = n * s
+	// insphere: c with insphere(q) = -(c[0..dim-1] * s + c[dim] * |s|^2)
+	// final fields, so instances may be shared between threads safely
+	private final double[] coefficients;
+	// bound on the absolute error of each coefficient
+	private final double coefficientError;
+	private final boolean lifted;
+
+	private CachedPredicate(double[] coefficients, double coefficientError, boolean lifted) {
+		this.coefficients = coefficients;
+		this.coefficientError = coefficientError;
+		this.lifted = lifted;
+	}
+
+	// caches Predicates.orientation(points, q)
+	public static CachedPredicate orientation(Point[] points) {
+		int dim = points[0].store.dim;
+		double[] p0Coords = points[0].coords();
+		int p0Offset = points[0].offset();
+		// orientation(q) = det[p_i - q] = det[-s; r_1; ...; r_(dim-1)] with
+		// r_i = p_i - p0, so the coefficients are the negated cofactors of the
+		// first row
+		double[] rows = new double[(dim - 1) * dim];
+		double permanentBound = 1.0;
+		for (int row = 1; row < dim; row++) {
+			double rowSum = 0.0;
+			for (int col = 0; col < dim; col++) {
+				double diff = points[row].coord(col) - p0Coords[p0Offset + col];
+				rows[(row - 1) * dim + col] = diff;
+				rowSum += Math.abs(diff);
+			}
+			permanentBound *= rowSum;
+		}
+		double[] cofactors = cofactorsOfMissingRow(rows, dim - 1, dim);
+		for (int col = 0; col < dim; col++) {
+			cofactors[col] = -cofactors[col];
+		}
+		return new CachedPredicate(cofactors, coefficientError(rows, dim - 1, dim, permanentBound, 1), false);
+	}
+
+	// caches Predicates.insphere(points, pTop, q)
+	public static CachedPredicate insphere(Point[] points, Point pTop) {
+		int dim = points[0].store.dim;
+		double[] p0Coords = points[0].coords();
+		int p0Offset = points[0].offset();
+		// adding 2 * s_j times column j to the lifted column and subtracting
+		// the row of p0 from all others turns the insphere determinant into
+		// -det[(s, |s|^2); (r_i, |r_i|^2)], so the coefficients are the
+		// cofactors of the first row
+		double[] rows = new double[dim * (dim + 1)];
+		double permanentBound = 1.0;
+		for (int row = 1; row < dim + 1; row++) {
+			Point p = row < dim ? points[row] : pTop;
+			double squareSum = 0.0;
+			double rowSum = 0.0;
+			for (int col = 0; col < dim; col++) {
+				double diff = p.coord(col) - p0Coords[p0Offset + col];
+				rows[(row - 1) * (dim + 1) + col] = diff;
+				squareSum += diff * diff;
+				rowSum += Math.abs(diff);
+			}
+			rows[(row - 1) * (dim + 1) + dim] = squareSum;
+			permanentBound *= rowSum + squareSum;
+		}
+		double[] cofactors = cofactorsOfMissingRow(rows, dim, dim + 1);
+		return new CachedPredicate(cofactors, coefficientError(rows, dim, dim + 1, permanentBound, dim + 2), true);
+	}
+
+	// sign of the cached determinant for q = qCoords[qOffset..qOffset+dim-1].
+	// points and pTop must be the ones this was created with (pTop is ignored
+	// for orientation tests).
+	public int sign(Point[] points, Point pTop, double[] qCoords, int qOffset) {
+		int dim = points[0].store.dim;
+		double[] p0Coords = points[0].coords();
+		int p0Offset = points[0].offset();
+		double value = 0.0;
+		double absSum = 0.0;
+		double sAbsSum = 0.0;
+		double sSquareSum = 0.0;
+		for (int col = 0; col < dim; col++) {
+			double s = qCoords[qOffset + col] - p0Coords[p0Offset + col];
+			double term = coefficients[col] * s;
+			value += term;
+			absSum += Math.abs(term);
+			sAbsSum += Math.abs(s);
+			sSquareSum += s * s;
+		}
+		double sFactorSum = sAbsSum;
+		if (lifted) {
+			double term = coefficients[dim] * sSquareSum;
+			value = -(value + term);
+			absSum += Math.abs(term);
+			sFactorSum += sSquareSum;
+		}
+		// rounding of s, |s|^2, products and sums, plus coefficient errors
+		double errorBound = 2.0 * (2 * dim + 4) * EPS * absSum + (1.0 + 1e-6) * coefficientError * sFactorSum;
+		if (Math.abs(value) > errorBound) {
+			return value > 0.0 ? 1 : -1;
+		}
+		return lifted ? Predicates.insphere(points, pTop, qCoords, qOffset)
+				: Predicates.orientation(points, qCoords, qOffset);
+	}
+
+	// cofactors of a (rowCount+1) x cols matrix (cols == rowCount+1) whose
+	// first row is missing, given the remaining rows
+	private static double[] cofactorsOfMissingRow(double[] rows, int rowCount, int cols) {
+		double[] cofactors = new double[cols];
+		double[] minor = new double[rowCount * rowCount];
+		for (int colSkip = 0; colSkip < cols; colSkip++) {
+			fillMinor(rows, rowCount, cols, colSkip, minor);
+			double det = rowCount == 0 ? 1.0 : UtilityMethods.det(minor, rowCount);
+			cofactors[colSkip] = colSkip % 2 == 0 ? det : -det;
+		}
+		return cofactors;
+	}
+
+	// bound on the absolute error of each cofactor computed by
+	// cofactorsOfMissingRow, given the entries' roundings and the product of
+	// the absolute row sums. unrolled minors are bounded relative to that
+	// product. larger minors are computed by elimination, whose error also
+	// depends on pivot growth, so their bound is computed from their factors
+	// (see Predicates.eliminationErrorBound).
+	private static double coefficientError(double[] rows, int rowCount, int cols, double permanentBound,
+			int entryRoundings) {
+		if (rowCount <= UtilityMethods.MAX_UNROLLED_DET_SIZE) {
+			return errorBoundFactor(rowCount, entryRoundings) * permanentBound;
+		}
+		double[] minor = new double[rowCount * rowCount];
+		double[] rowSums = new double[rowCount];
+		double error = 0.0;
+		for (int colSkip = 0; colSkip < cols; colSkip++) {
+			fillMinor(rows, rowCount, cols, colSkip, minor);
+			for (int row = 0; row < rowCount; row++) {
+				double rowSum = 0.0;
+				for (int col = 0; col < rowCount; col++) {
+					rowSum += Math.abs(minor[row * rowCount + col]);
+				}
+				rowSums[row] = rowSum;
+			}
+			double det = UtilityMethods.detByElimination(minor, rowCount);
+			error = Math.max(error, Predicates.eliminationErrorBound(minor, rowSums, rowCount, entryRoundings, det));
+		}
+		return error;
+	}
+
+	// the rows without column colSkip
+	private static void fillMinor(double[] rows, int rowCount, int cols, int colSkip, double[] minor) {
+		for (int row = 0; row < rowCount; row++) {
+			int minorCol = 0;
+			for (int col = 0; col < cols; col++) {
+				if (col != colSkip) {
+					minor[row * rowCount + minorCol] = rows[row * cols + col];
+					minorCol++;
+				}
+			}
+		}
+	}
+
+	// relative error bound of the unrolled determinant of a size x size matrix
+	// with entries carrying entryRoundings roundings each, w.r.t. the product
+	// of its absolute row sums (see Predicates)
+	private static double errorBoundFactor(int size, int entryRoundings) {
+		return 2.0 * (size * size + size * entryRoundings + 2) * EPS;
+	}
+
+}
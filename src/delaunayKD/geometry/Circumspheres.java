@@ -0,0 +1,201 @@
+package delaunayKD.geometry;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Arrays;
+
+import delaunayKD.misc.UtilityMethods;
+
+// Circumspheres of simplices and smallest spheres through the vertices of
+// faces, in any dimension. Both are the circumsphere of k+1 points within
+// their affine hull: with a_j = p_j - p_0, its center is p_0 + x where
+// a_j . x = |a_j|^2 / 2 for all j. For a simplex (k = dim) this is a
+// dim x dim system in x. For a face (k = dim - 1), x = sum_i l_i a_i lies in
+// the span of the a_i, giving the k x k system sum_i (a_j . a_i) l_i =
+// |a_j|^2 / 2. Scratch space is per thread, so calls don't allocate.
+public class Circumspheres {
+
+	// per-thread scratch space
+	private static class Scratch {
+		double[] diffs = new double[0]; // a_j, row j-1
+		double[] matrix = new double[0];
+		double[] rhs = new double[0];
+		double[] offset = new double[0]; // x
+	}
+
+	private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	private static Scratch scratch(int dim) {
+		Scratch scr = scratch.get();
+		if (scr.offset.length < dim) {
+			scr.diffs = new double[dim * dim];
+			scr.matrix = new double[dim * dim];
+			scr.rhs = new double[dim];
+			scr.offset = new double[dim];
+		}
+		return scr;
+	}
+
+	// circumsphere of the simplex with vertices facePoints and pTop, or if
+	// pTop is null, smallest sphere through facePoints. writes the center to
+	// center (if not null) and returns the radius. degenerate point sets have
+	// no such sphere: the radius is then infinite and the center NaN.
+	public static double circumsphere(Point[] facePoints, Point pTop, double[] center) {
+		int dim = facePoints[0].store.dim;
+		int k = pTop != null ? facePoints.length : facePoints.length - 1;
+		Scratch scr = scratch(dim);
+		double[] diffs = scr.diffs;
+		double[] matrix = scr.matrix;
+		double[] rhs = scr.rhs;
+		double[] offset = scr.offset;
+		double[] originCoords = facePoints[0].coords();
+		int originOffset = facePoints[0].offset();
+		for (int j = 0; j < k; j++) {
+			Point p = j + 1 < facePoints.length ? facePoints[j + 1] : pTop;
+			double[] coords = p.coords();
+			int pOffset = p.offset();
+			double lengthSq = 0.0;
+			for (int col = 0; col < dim; col++) {
+				double diff = coords[pOffset + col] - originCoords[originOffset + col];
+				diffs[j * dim + col] = diff;
+				lengthSq += diff * diff;
+			}
+			rhs[j] = 0.5 * lengthSq;
+		}
+
+		boolean solved;
+		if (k == dim) {
+			System.arraycopy(diffs, 0, matrix, 0, dim * dim);
+			solved = UtilityMethods.solveByElimination(matrix, rhs, dim);
+			if (solved) {
+				System.arraycopy(rhs, 0, offset, 0, dim);
+			}
+		} else {
+			// Gram matrix of the a_i
+			for (int row = 0; row < k; row++) {
+				for (int col = row; col < k; col++) {
+					double dot = 0.0;
+					for (int idx = 0; idx < dim; idx++) {
+						dot += diffs[row * dim + idx] * diffs[col * dim + idx];
+					}
+					matrix[row * k + col] = dot;
+					matrix[col * k + row] = dot;
+				}
+			}
+			solved = UtilityMethods.solveByElimination(matrix, rhs, k);
+			if (solved) {
+				Arrays.fill(offset, 0, dim, 0.0);
+				for (int i = 0; i < k; i++) {
+					for (int col = 0; col < dim; col++) {
+						offset[col] += rhs[i] * diffs[i * dim + col];
+					}
+				}
+			}
+		}
+
+		if (!solved) {
+			if (center != null) {
+				Arrays.fill(center, 0, dim, Double.NaN);
+			}
+			return Double.POSITIVE_INFINITY;
+		}
+		double radiusSq = 0.0;
+		for (int col = 0; col < dim; col++) {
+			radiusSq += offset[col] * offset[col];
+			if (center != null) {
+				center[col] = originCoords[originOffset + col] + offset[col];
+			}
+		}
+		return Math.sqrt(radiusSq);
+	}
+
+	// like circumsphere, but computes the radius from the exact coordinates
+	// and rounds it only at the end, so it is within about an ulp of the true
+	// radius. the systems above are solved by Cramer's rule over integers
+	// (coordinates scaled by 2^-minExponent): with the solution y = D_i / D of
+	// the system with right hand side |a_j|^2 (twice the one above), the
+	// offset is y / 2 for a simplex and sum_i y_i a_i / 2 for a face. slow,
+	// for when rounding in circumsphere matters.
+	public static double circumradiusExact(Point[] facePoints, Point pTop) {
+		int dim = facePoints[0].store.dim;
+		int k = pTop != null ? facePoints.length : facePoints.length - 1;
+		int minExponent = Integer.MAX_VALUE;
+		for (int j = 0; j <= k; j++) {
+			Point p = j < facePoints.length ? facePoints[j] : pTop;
+			minExponent = Predicates.minExponent(p.coords(), p.offset(), dim, minExponent);
+		}
+		if (minExponent == Integer.MAX_VALUE) {
+			// all points at the origin
+			return Double.POSITIVE_INFINITY;
+		}
+		BigInteger[] origin = Predicates.toBigIntegers(facePoints[0].coords(), facePoints[0].offset(), dim,
+				minExponent);
+		BigInteger[] diffs = new BigInteger[k * dim];
+		BigInteger[] rhs = new BigInteger[k];
+		for (int j = 0; j < k; j++) {
+			Point p = j + 1 < facePoints.length ? facePoints[j + 1] : pTop;
+			BigInteger[] ints = Predicates.toBigIntegers(p.coords(), p.offset(), dim, minExponent);
+			BigInteger lengthSq = BigInteger.ZERO;
+			for (int col = 0; col < dim; col++) {
+				BigInteger diff = ints[col].subtract(origin[col]);
+				diffs[j * dim + col] = diff;
+				lengthSq = lengthSq.add(diff.multiply(diff));
+			}
+			rhs[j] = lengthSq;
+		}
+
+		BigInteger[] system;
+		if (k == dim) {
+			system = diffs;
+		} else {
+			// Gram matrix of the a_i
+			system = new BigInteger[k * k];
+			for (int row = 0; row < k; row++) {
+				for (int col = row; col < k; col++) {
+					BigInteger dot = BigInteger.ZERO;
+					for (int idx = 0; idx < dim; idx++) {
+						dot = dot.add(diffs[row * dim + idx].multiply(diffs[col * dim + idx]));
+					}
+					system[row * k + col] = dot;
+					system[col * k + row] = dot;
+				}
+			}
+		}
+		BigInteger det = Predicates.detExact(system.clone(), k);
+		if (det.signum() == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		// D * 2 * offset, scaled
+		BigInteger[] offset = new BigInteger[dim];
+		Arrays.fill(offset, BigInteger.ZERO);
+		BigInteger[] replaced = new BigInteger[k * k];
+		for (int i = 0; i < k; i++) {
+			System.arraycopy(system, 0, replaced, 0, k * k);
+			for (int row = 0; row < k; row++) {
+				replaced[row * k + i] = rhs[row];
+			}
+			BigInteger detI = Predicates.detExact(replaced, k);
+			if (k == dim) {
+				offset[i] = detI;
+			} else {
+				for (int col = 0; col < dim; col++) {
+					offset[col] = offset[col].add(detI.multiply(diffs[i * dim + col]));
+				}
+			}
+		}
+		BigInteger offsetSq = BigInteger.ZERO;
+		for (int col = 0; col < dim; col++) {
+			offsetSq = offsetSq.add(offset[col].multiply(offset[col]));
+		}
+		double radiusSq = new BigDecimal(offsetSq).divide(new BigDecimal(det.multiply(det).shiftLeft(2)),
+				MathContext.DECIMAL128).doubleValue();
+		return Math.scalb(Math.sqrt(radiusSq), minExponent);
+	}
+
+}
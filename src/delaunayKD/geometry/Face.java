@@ -3,9 +3,7 @@ package delaunayKD.geometry;
 import java.util.ArrayList;
 import java.util.Arrays;
 
-import delaunayKD.misc.UtilityMethods;
-
-import static delaunayKD.AllSimplicesFinder.DIM;
+import delaunayKD.Enumerator;
 
 public class Face {
 	// Every instance of a face (i.e. instance of a (DIM-1)-simplex) is created
@@ -28,9 +26,14 @@ public class Face {
 	public AbstractSimplex simplex;
 
 	// If face is part of the hull (i.e. not part of a proper simplex), these
-	// are its neighboring faces on the hull. Old hull pointers aren't removed.
+	// are its neighboring faces on the hull. Old hull pointers aren't removed
+	// during an update, but once it is complete, pointers to dead faces and
+	// the pointers of faces with a new proper simplex are (see
+	// Triangulator.reclaim()).
 	// Convention: neighbor across ridge opposite point i is stored at index i.
-	public Face hNeighbors[] = new Face[DIM];
+	// Only allocated once the first link is set because most faces never
+	// become part of a hull, use hNeighbor()/setHNeighbor() to access.
+	public Face hNeighbors[];
 
 	// Pointers on boundary faces between corresponding instances in stars
 	// and hole triangulations, used for point location
@@ -40,18 +43,30 @@ public class Face {
 	// structures, the unique face will be the same for both instances
 	public UniqueFace uniqueFace;
 
-	// for search algorithms
-	private boolean marked = false;
-	private static ArrayList<Face> markedFaces = new ArrayList<Face>();
+	// for search algorithms: epoch of the last search which marked this
+	private long markEpoch = 0;
+
+	// id + 1 of this face pair while a checkpoint is written, 0 otherwise
+	// (only used on the non-reverse face)
+	public int checkpointRef = 0;
 
 	// List of Delaunay simplices to have existed adjacent to this face
 	// instance, sorted by highest index point of simplex. Only includes
-	// simplices that belonged to the corresponding triangulation.
-	public ArrayList<AbstractSimplex> knownSimplices= new ArrayList<AbstractSimplex>();
+	// simplices that belonged to the corresponding triangulation. Only
+	// allocated with the first known simplex when doing alpha bookkeeping,
+	// since most faces never get one on either side.
+	public ArrayList<AbstractSimplex> knownSimplices;
 
 	// constructors ensuring uniqueFace is always passed on properly
 	public Face(Point[] points) {
-		this.uniqueFace = new UniqueFace(points);
+		this(new UniqueFace(points), false);
+		r = new Face(uniqueFace, true);
+		r.r = this;
+	}
+
+	// new instance of an existing unique face, along with its reverse
+	public Face(UniqueFace uniqueFace) {
+		this(uniqueFace, false);
 		r = new Face(uniqueFace, true);
 		r.r = this;
 	}
@@ -62,6 +77,22 @@ public class Face {
 		this.isReverse = isReverse;
 	}
 
+	public boolean hasKnownSimplices() {
+		return knownSimplices != null && !knownSimplices.isEmpty();
+	}
+
+	public void addKnownSimplex(AbstractSimplex simplex) {
+		if (knownSimplices == null) {
+			knownSimplices = new ArrayList<AbstractSimplex>(2);
+		}
+		knownSimplices.add(simplex);
+	}
+
+	// context of the enumeration this face belongs to
+	public Enumerator enumerator() {
+		return uniqueFace.points[0].enumerator;
+	}
+
 	public Face clone() {
 		Face faceCloned = new Face(uniqueFace, isReverse);
 		Face faceClonedR = new Face(uniqueFace, !isReverse);
@@ -75,7 +106,7 @@ public class Face {
 	// this face. the returned face is oriented such that it faces pFacing.
 	public Face createFaceFacing(Point pNew, int pFacingIdx) {
 		// copy all points of faceNeighbor, but replace pFacing with pNew
-		Point[] points = Arrays.copyOf(points(), DIM);
+		Point[] points = Arrays.copyOf(points(), points().length);
 		points[pFacingIdx] = pNew;
 		Face faceNew = new Face(points);
 		// return reversed so new face faces this face
@@ -91,13 +122,27 @@ public class Face {
 		return uniqueFace.points;
 	}
 
+	// returns the hull face linked across the ridge opposite point pIdx, null
+	// if no link was set
+	public Face hNeighbor(int pIdx) {
+		return hNeighbors == null ? null : hNeighbors[pIdx];
+	}
+
+	// sets the hull link across the ridge opposite point pIdx (one way only)
+	public void setHNeighbor(int pIdx, Face hNeighbor) {
+		if (hNeighbors == null) {
+			hNeighbors = new Face[points().length];
+		}
+		hNeighbors[pIdx] = hNeighbor;
+	}
+
 	// returns the hull face linked across the ridge opposite the given point.
 	// no guarantees made for non-hull faces and non-vertex points.
 	public Face hNeighborOpposite(Point pOpposite) {
 		Point[] points = points();
-		for (int i = 0; i < DIM; i++) {
+		for (int i = 0; i < points.length; i++) {
 			if (points[i] == pOpposite) {
-				return hNeighbors[i];
+				return hNeighbor(i);
 			}
 		}
 		return null;
@@ -107,7 +152,7 @@ public class Face {
 	// hNeighbor over the shared ridge opposite the given point
 	public void hLinkTo(Face hNeighbor, Point pOpposite) {
 		Point[] points = points();
-		for (int i = 0; i < DIM; i++) {
+		for (int i = 0; i < points.length; i++) {
 			if (points[i] == pOpposite) {
 				hLinkTo(hNeighbor, i);
 				return;
@@ -118,52 +163,52 @@ public class Face {
 	// sets back-and-forth hull neighbor pointers between this face and
 	// hNeighbor over the shared ridge opposite point pIdx
 	public void hLinkTo(Face hNeighbor, int pIdx) {
-		hNeighbors[pIdx] = hNeighbor;
+		setHNeighbor(pIdx, hNeighbor);
 		int pNeighborOppositeIdx = hNeighbor.pointOppositeIndex(this, points()[pIdx]);
-		hNeighbor.hNeighbors[pNeighborOppositeIdx] = this;
+		hNeighbor.setHNeighbor(pNeighborOppositeIdx, this);
 	}
 
 	// orientation test
 	public boolean facesPoint(Point q) {
-		return facesPoint(q.v);
+		return facesPoint(q.coords(), q.offset());
 	}
 
 	// orientation test
 	public boolean facesPoint(double[] qVals) {
-		// www.cs.cmu.edu/~quake/robust.html
-		Point[] points = points();
-		double[] matrix = new double[DIM * DIM];
-		for (int row = 0; row < DIM; row++) {
-			double[] vals = points[row].v;
-			for (int col = 0; col < DIM; col++) {
-				matrix[row * DIM + col] = vals[col] - qVals[col];
+		return facesPoint(qVals, 0);
+	}
+
+	// orientation test for q = qCoords[qOffset..qOffset+dim-1]
+	public boolean facesPoint(double[] qCoords, int qOffset) {
+		Enumerator enumerator = enumerator();
+		if (enumerator.metrics != null) {
+			enumerator.metrics.orientationTest();
+		}
+		if (enumerator.cachePredicates) {
+			CachedPredicate orientation = uniqueFace.orientation;
+			if (orientation == null) {
+				orientation = CachedPredicate.orientation(points());
+				uniqueFace.orientation = orientation;
 			}
+			return isReverse ^ (orientation.sign(points(), null, qCoords, qOffset) > 0);
 		}
-		return isReverse ^ (UtilityMethods.det(matrix, DIM) > 0.0);
+		return isReverse ^ (Predicates.orientation(points(), qCoords, qOffset) > 0);
 	}
 
-	
 	// whether the simplex created from pTop and this face (must be facing pTop)
 	// contains q in its circumsphere
 	public boolean simplexContainsPointInCircumsphere(Point pTop, Point q) {
-		// www.cs.cmu.edu/~quake/robust.html
-		Point[] points = points();
-		double[] qVals = q.v;
-		double[] matrix = new double[(DIM + 1) * (DIM + 1)];
-		for (int row = 0; row < DIM + 1; row++) {
-			double[] vals = row < DIM ? points[row].v : pTop.v;
-			double squareSum = 0.0;
-			for (int col = 0; col < DIM; col++) {
-				double diff = vals[col] - qVals[col];
-				matrix[row * (DIM + 1) + col] = diff;
-				squareSum += diff * diff;
-			}
-			matrix[row * (DIM + 1) + DIM] = squareSum;
+		Enumerator enumerator = enumerator();
+		if (enumerator.metrics != null) {
+			enumerator.metrics.insphereTest();
 		}
-		return isReverse ^ (UtilityMethods.det(matrix, DIM + 1) > 0.0);
+		return isReverse ^ (Predicates.insphere(points(), pTop, q.coords(), q.offset()) > 0);
 	}
 
 	public boolean hasVertex(Point q) {
+		if (q.i < uniqueFace.minPoint.i || q.i > uniqueFace.maxPoint.i) {
+			return false;
+		}
 		Point[] points = points();
 		for (Point point : points) {
 			if (point == q) {
@@ -183,11 +228,13 @@ public class Face {
 	// by the point
 	// opposite of that ridge in another face sharing that ridge with this face)
 	public int pointOppositeIndex(Face faceNeighbor, Point pOppositeNeighbor) {
+		// the faces share all points but one each, so the index sums give the
+		// missing point's index (which is pOppositeNeighbor's for this.r ===
+		// faceNeighbor)
+		long pOppositeI = uniqueFace.indexSum - faceNeighbor.uniqueFace.indexSum + pOppositeNeighbor.i;
 		Point[] points = points();
-		for (int pIdx = 0; pIdx < DIM; pIdx++) {
-			Point point = points[pIdx];
-			if (point == pOppositeNeighbor || !faceNeighbor.hasVertex(point)) {
-				// first condition is fallback for when this.r === faceNeighbor
+		for (int pIdx = 0; pIdx < points.length; pIdx++) {
+			if (points[pIdx].i == pOppositeI) {
 				return pIdx;
 			}
 		}
@@ -205,25 +252,11 @@ public class Face {
 	}
 
 	public Point maxPoint() {
-		Point[] points = points();
-		Point maxPoint = points[0];
-		for (Point pCompare : points) {
-			if (pCompare.i > maxPoint.i) {
-				maxPoint = pCompare;
-			}
-		}
-		return maxPoint;
+		return uniqueFace.maxPoint;
 	}
 
 	public Point minPoint() {
-		Point[] points = points();
-		Point minPoint = points[0];
-		for (Point pCompare : points) {
-			if (pCompare.i < minPoint.i) {
-				minPoint = pCompare;
-			}
-		}
-		return minPoint;
+		return uniqueFace.minPoint;
 	}
 
 	@Override
@@ -233,26 +266,18 @@ public class Face {
 		if (isReverse) {
 			s = "r: " + s;
 		}
-		for (int i = 1; i < DIM; i++) {
+		for (int i = 1; i < points.length; i++) {
 			s += " - " + points[i].i;
 		}
 		return s;
 	}
 
-	public void mark() {
-		marked = true;
-		markedFaces.add(this);
-	}
-
-	public boolean isMarked() {
-		return marked;
+	public void mark(long epoch) {
+		markEpoch = epoch;
 	}
 
-	static public void unmarkAll() {
-		for (Face face : markedFaces) {
-			face.marked = false;
-		}
-		markedFaces.clear();
+	public boolean isMarked(long epoch) {
+		return markEpoch == epoch;
 	}
 
 }
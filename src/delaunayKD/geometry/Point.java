@@ -1,17 +1,13 @@
 package delaunayKD.geometry;
 
-import static delaunayKD.AllSimplicesFinder.DIM;
-
+import delaunayKD.Enumerator;
 import delaunayKD.triangulator.HoleTriangulator;
 import delaunayKD.triangulator.Star;
 
 public class Point {
 
-	// for search algorithms
-	public boolean marked = false;
-
-	// coordinates
-	public double v[];
+	// holds the coordinates of this point, at index i
+	public final PointStore store;
 
 	// index/time stamp
 	public int i;
@@ -20,21 +16,37 @@ public class Point {
 	public HoleTriangulator ht;
 	public Star star;
 
-	public Point(double[] v, int i) {
-		this.v = v;
+	// context of the enumeration this point is inserted in
+	public Enumerator enumerator;
+
+	public Point(PointStore store, int i) {
+		this.store = store;
 		this.i = i;
 	}
 
+	// coordinate d is coords()[offset() + d]
+	public double[] coords() {
+		return store.coords;
+	}
+
+	public int offset() {
+		return i * store.dim;
+	}
+
+	public double coord(int d) {
+		return store.coords[i * store.dim + d];
+	}
+
 	@Override
 	public String toString() {
 		String s = i + " (";
-		for (int idx = 0; idx < DIM; idx++) {
-			String val = v[idx] + "";
+		for (int idx = 0; idx < store.dim; idx++) {
+			String val = coord(idx) + "";
 			if (val.length() > 5) {
 				val = val.substring(0, 5);
 			}
 			s += val;
-			if (idx < DIM - 1) {
+			if (idx < store.dim - 1) {
 				s += ", ";
 			}
 		}
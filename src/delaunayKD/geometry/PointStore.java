@@ -0,0 +1,92 @@
+package delaunayKD.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Coordinates of a point sequence in one contiguous array: coordinate d of
+// the point with index i is coords[i * dim + d]. Points only refer to their
+// store and index, so a sequence of n points costs n * dim doubles plus one
+// small object per point, instead of one array (with header) per point. See
+// store.PointFiles for loading stores from files.
+public class PointStore {
+
+	public final int dim;
+
+	// replaced when the store grows, so read it through the field each time
+	public double[] coords;
+
+	private int size;
+
+	public PointStore(int dim) {
+		this(dim, 16);
+	}
+
+	public PointStore(int dim, int capacity) {
+		if (dim < 1) {
+			throw new RuntimeException("dimension must be positive");
+		}
+		this.dim = dim;
+		coords = new double[Math.max(capacity, 1) * dim];
+	}
+
+	// store of the first size points in coords (not copied)
+	public PointStore(int dim, double[] coords, int size) {
+		if ((long) size * dim > coords.length) {
+			throw new RuntimeException("coordinates of " + size + " points expected, got " + coords.length / dim);
+		}
+		this.dim = dim;
+		this.coords = coords;
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// appends a point with the given coordinates (copied), returns its index
+	public int append(double... vals) {
+		if (vals.length != dim) {
+			throw new RuntimeException("expected " + dim + " coordinates, got " + vals.length);
+		}
+		ensureCapacity(size + 1);
+		System.arraycopy(vals, 0, coords, size * dim, dim);
+		return size++;
+	}
+
+	public void ensureCapacity(int capacity) {
+		if ((long) capacity * dim > coords.length) {
+			long newLength = Math.max((long) capacity * dim, 2L * coords.length);
+			if (newLength > Integer.MAX_VALUE - 8) {
+				newLength = (long) capacity * dim;
+				if (newLength > Integer.MAX_VALUE - 8) {
+					throw new RuntimeException("point store can't hold " + capacity + " points");
+				}
+			}
+			coords = Arrays.copyOf(coords, (int) newLength);
+		}
+	}
+
+	public double coord(int index, int d) {
+		return coords[index * dim + d];
+	}
+
+	// the point with the given index, as a new object (stars and hole
+	// triangulations are attached to point objects, so each enumeration
+	// needs its own)
+	public Point point(int index) {
+		if (index < 0 || index >= size) {
+			throw new RuntimeException("point index " + index + " out of range [0, " + size + ")");
+		}
+		return new Point(this, index);
+	}
+
+	// all points of the store, in order, as new objects (see point())
+	public ArrayList<Point> points() {
+		ArrayList<Point> points = new ArrayList<Point>(size);
+		for (int index = 0; index < size; index++) {
+			points.add(new Point(this, index));
+		}
+		return points;
+	}
+
+}
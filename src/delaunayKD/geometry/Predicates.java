@@ -0,0 +1,502 @@
+package delaunayKD.geometry;
+
+import java.math.BigInteger;
+
+import delaunayKD.misc.UtilityMethods;
+
+// Filtered orientation and insphere predicates. The determinant is first
+// evaluated in floating point. If its absolute value exceeds a static error
+// bound, its sign is certain and returned right away. Otherwise, it is
+// evaluated again with its columns scaled by powers of two (exactly, the sign
+// is unaffected) to maximum absolute values in [1, 2), as the bound from
+// unscaled row sums is dominated by the largest column, e.g. the lifted one
+// on the moment curve. Otherwise, up to size MAX_DOUBLE_DOUBLE_SIZE, it is
+// evaluated in double-double arithmetic against a correspondingly smaller
+// bound, and only if that fails too it is recomputed exactly from the input
+// coordinates.
+// www.cs.cmu.edu/~quake/robust.html
+public class Predicates {
+
+	// unit roundoff of double precision
+	private static final double EPS = Math.ulp(1.0) / 2;
+	// relative error bound of the double-double operations below (addition
+	// 3u^2 + 13u^3, multiplication 7u^2, Joldes, Muller, Popescu: Tight and
+	// rigorous error bounds for basic building blocks of double-word
+	// arithmetic), rounded up
+	private static final double EPS_DOUBLE_DOUBLE = 8 * EPS * EPS;
+	// largest matrix evaluated in double-double, i.e. insphere tests up to
+	// dimension 5. the expansion below takes size * 2^(size-1) operations.
+	private static final int MAX_DOUBLE_DOUBLE_SIZE = 6;
+	// 2^27 + 1, splits a double into two halves of 26 bits each (Dekker)
+	private static final double SPLITTER = 134217729.0;
+
+	// per-thread scratch space for the floating point evaluation
+	private static class Scratch {
+		double[] matrix = new double[0];
+		double[] rowSums = new double[0];
+		// double-double matrix, high and low parts
+		double[] matrixHi = new double[0];
+		double[] matrixLo = new double[0];
+		// double-double minors, indexed by column subsets
+		double[] minorsHi = new double[0];
+		double[] minorsLo = new double[0];
+		// result of the last double-double operation
+		double resultHi;
+		double resultLo;
+	}
+
+	private static final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	private static Scratch scratch(int size) {
+		Scratch scr = scratch.get();
+		if (scr.rowSums.length < size) {
+			scr.matrix = new double[size * size];
+			scr.rowSums = new double[size];
+			int doubleDoubleSize = Math.min(size, MAX_DOUBLE_DOUBLE_SIZE);
+			scr.matrixHi = new double[doubleDoubleSize * doubleDoubleSize];
+			scr.matrixLo = new double[doubleDoubleSize * doubleDoubleSize];
+			scr.minorsHi = new double[1 << doubleDoubleSize];
+			scr.minorsLo = new double[1 << doubleDoubleSize];
+		}
+		return scr;
+	}
+
+	// sign of the determinant of the dim x dim matrix with rows points[i] - q,
+	// where q is qCoords[qOffset..qOffset+dim-1]
+	public static int orientation(Point[] points, double[] qCoords, int qOffset) {
+		int dim = points[0].store.dim;
+		Scratch scr = scratch(dim);
+		orientationMatrix(scr, points, qCoords, qOffset);
+		int sign = filteredDetSign(scr.matrix, scr.rowSums, dim, dim + 2);
+		if (sign == 0) {
+			// elimination destroys the matrix
+			orientationMatrix(scr, points, qCoords, qOffset);
+			if (scaleColumns(scr.matrix, null, scr.rowSums, dim)) {
+				sign = filteredDetSign(scr.matrix, scr.rowSums, dim, dim + 2);
+			}
+		}
+		if (sign == 0 && dim <= MAX_DOUBLE_DOUBLE_SIZE) {
+			double[] matrixHi = scr.matrixHi;
+			double[] matrixLo = scr.matrixLo;
+			for (int row = 0; row < dim; row++) {
+				double[] coords = points[row].coords();
+				int offset = points[row].offset();
+				for (int col = 0; col < dim; col++) {
+					twoDiff(scr, coords[offset + col], qCoords[qOffset + col]);
+					matrixHi[row * dim + col] = scr.resultHi;
+					matrixLo[row * dim + col] = scr.resultLo;
+				}
+			}
+			sign = doubleDoubleDetSign(scr, dim, 0);
+		}
+		return sign != 0 ? sign : orientationExact(points, qCoords, qOffset);
+	}
+
+	// sign of the determinant of the (dim+1) x (dim+1) matrix with rows
+	// (points[i] - q, |points[i] - q|^2), where pTop is used as the last point
+	public static int insphere(Point[] points, Point pTop, double[] qCoords, int qOffset) {
+		int dim = points[0].store.dim;
+		Scratch scr = scratch(dim + 1);
+		insphereMatrix(scr, points, pTop, qCoords, qOffset);
+		int sign = filteredDetSign(scr.matrix, scr.rowSums, dim + 1, dim + 2);
+		if (sign == 0) {
+			// elimination destroys the matrix
+			insphereMatrix(scr, points, pTop, qCoords, qOffset);
+			if (scaleColumns(scr.matrix, null, scr.rowSums, dim + 1)) {
+				sign = filteredDetSign(scr.matrix, scr.rowSums, dim + 1, dim + 2);
+			}
+		}
+		if (sign == 0 && dim + 1 <= MAX_DOUBLE_DOUBLE_SIZE) {
+			double[] matrixHi = scr.matrixHi;
+			double[] matrixLo = scr.matrixLo;
+			for (int row = 0; row < dim + 1; row++) {
+				Point p = row < dim ? points[row] : pTop;
+				double[] coords = p.coords();
+				int offset = p.offset();
+				double squareSumHi = 0.0;
+				double squareSumLo = 0.0;
+				for (int col = 0; col < dim; col++) {
+					// differences are exact, squares and their sum are not
+					twoDiff(scr, coords[offset + col], qCoords[qOffset + col]);
+					double diffHi = scr.resultHi;
+					double diffLo = scr.resultLo;
+					matrixHi[row * (dim + 1) + col] = diffHi;
+					matrixLo[row * (dim + 1) + col] = diffLo;
+					multiply(scr, diffHi, diffLo, diffHi, diffLo);
+					add(scr, squareSumHi, squareSumLo, scr.resultHi, scr.resultLo);
+					squareSumHi = scr.resultHi;
+					squareSumLo = scr.resultLo;
+				}
+				matrixHi[row * (dim + 1) + dim] = squareSumHi;
+				matrixLo[row * (dim + 1) + dim] = squareSumLo;
+			}
+			sign = doubleDoubleDetSign(scr, dim + 1, 2 * dim);
+		}
+		return sign != 0 ? sign : insphereExact(points, pTop, qCoords, qOffset);
+	}
+
+	// fills scr.matrix with the rows points[i] - q and scr.rowSums with their
+	// absolute sums
+	private static void orientationMatrix(Scratch scr, Point[] points, double[] qCoords, int qOffset) {
+		int dim = points[0].store.dim;
+		double[] matrix = scr.matrix;
+		double[] rowSums = scr.rowSums;
+		for (int row = 0; row < dim; row++) {
+			double[] coords = points[row].coords();
+			int offset = points[row].offset();
+			double rowSum = 0.0;
+			for (int col = 0; col < dim; col++) {
+				double diff = coords[offset + col] - qCoords[qOffset + col];
+				matrix[row * dim + col] = diff;
+				rowSum += Math.abs(diff);
+			}
+			rowSums[row] = rowSum;
+		}
+	}
+
+	// fills scr.matrix with the rows (points[i] - q, |points[i] - q|^2) and
+	// scr.rowSums with their absolute sums
+	private static void insphereMatrix(Scratch scr, Point[] points, Point pTop, double[] qCoords, int qOffset) {
+		int dim = points[0].store.dim;
+		double[] matrix = scr.matrix;
+		double[] rowSums = scr.rowSums;
+		for (int row = 0; row < dim + 1; row++) {
+			Point p = row < dim ? points[row] : pTop;
+			double[] coords = p.coords();
+			int offset = p.offset();
+			double squareSum = 0.0;
+			double rowSum = 0.0;
+			for (int col = 0; col < dim; col++) {
+				double diff = coords[offset + col] - qCoords[qOffset + col];
+				matrix[row * (dim + 1) + col] = diff;
+				squareSum += diff * diff;
+				rowSum += Math.abs(diff);
+			}
+			matrix[row * (dim + 1) + dim] = squareSum;
+			rowSums[row] = rowSum + squareSum;
+		}
+	}
+
+	// scales the columns of the size x size matrix by powers of two, so their
+	// maximum absolute values are in [1, 2), and recomputes rowSums. lowParts
+	// (of a double-double matrix) are scaled along and added to rowSums if not
+	// null. returns false if a column is zero.
+	private static boolean scaleColumns(double[] matrix, double[] lowParts, double[] rowSums, int size) {
+		for (int col = 0; col < size; col++) {
+			double colMax = 0.0;
+			for (int row = 0; row < size; row++) {
+				colMax = Math.max(colMax, Math.abs(matrix[row * size + col]));
+			}
+			if (colMax == 0.0) {
+				return false;
+			}
+			double scale = Math.scalb(1.0, -Math.getExponent(colMax));
+			for (int row = 0; row < size; row++) {
+				matrix[row * size + col] *= scale;
+				if (lowParts != null) {
+					lowParts[row * size + col] *= scale;
+				}
+			}
+		}
+		for (int row = 0; row < size; row++) {
+			double rowSum = 0.0;
+			for (int col = 0; col < size; col++) {
+				rowSum += Math.abs(matrix[row * size + col]);
+				if (lowParts != null) {
+					rowSum += Math.abs(lowParts[row * size + col]);
+				}
+			}
+			rowSums[row] = rowSum;
+		}
+		return true;
+	}
+
+	// sign of the determinant of a size x size matrix of (rounded) coordinate
+	// differences and lifted squared distances if certain, 0 otherwise. entries
+	// carry a relative error of at most entryRoundings*EPS each. rowSums are the
+	// absolute row sums, their product bounds the permanent of the absolute
+	// values. may destroy matrix.
+	private static int filteredDetSign(double[] matrix, double[] rowSums, int size, int entryRoundings) {
+		double permanentBound = 1.0;
+		for (int row = 0; row < size; row++) {
+			permanentBound *= rowSums[row];
+		}
+		if (size <= UtilityMethods.MAX_UNROLLED_DET_SIZE) {
+			// unrolled expansion adds at most size^2 roundings along any of its
+			// products, relative to the permanent. doubled for safety.
+			double det = UtilityMethods.det(matrix, size);
+			double errorBound = 2.0 * (size * size + size * entryRoundings + 2) * EPS * permanentBound;
+			return Math.abs(det) > errorBound ? (det > 0.0 ? 1 : -1) : 0;
+		}
+
+		double det = UtilityMethods.detByElimination(matrix, size);
+		if (det == 0.0) {
+			return 0;
+		}
+		double errorBound = eliminationErrorBound(matrix, rowSums, size, entryRoundings, det);
+		return Math.abs(det) > errorBound ? (det > 0.0 ? 1 : -1) : 0;
+	}
+
+	// bound on the absolute error of det, computed by
+	// UtilityMethods.detByElimination, which left the factors L and U in
+	// matrix. rowSums and entryRoundings as in filteredDetSign. infinite if
+	// there is no bound, i.e. if the matrix was found singular or has a zero
+	// row.
+	// the factors satisfy LU = PA + E with |E| <= gamma(size) |L||U|, so
+	// det(PA + E) is the computed determinant up to gamma(size) and differs
+	// from det(PA) by at most prod(rowSums + rowSums(|E|)) - prod(rowSums),
+	// bounding the permanent. entry errors are added to rowSums(|E|) in the
+	// same way.
+	static double eliminationErrorBound(double[] matrix, double[] rowSums, int size, int entryRoundings,
+			double det) {
+		double permanentBound = 1.0;
+		for (int row = 0; row < size; row++) {
+			permanentBound *= rowSums[row];
+		}
+		if (det == 0.0 || permanentBound == 0.0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double gamma = size * EPS / (1 - size * EPS);
+		double errorRowSumMax = 0.0;
+		for (int row = 0; row < size; row++) {
+			// row of |L||U|: sum over k <= row of |l(row,k)| * rowSum(|U|, k)
+			double errorRowSum = 0.0;
+			for (int k = 0; k <= row; k++) {
+				double uRowSum = 0.0;
+				for (int col = k; col < size; col++) {
+					uRowSum += Math.abs(matrix[k * size + col]);
+				}
+				errorRowSum += (k == row ? 1.0 : Math.abs(matrix[row * size + k])) * uRowSum;
+			}
+			errorRowSumMax = Math.max(errorRowSumMax, errorRowSum);
+		}
+		errorRowSumMax *= gamma;
+		// prod(rowSums * (1 + entryError) + errorRowSumMax) - prod(rowSums), row
+		// order doesn't matter as the same bound is used for each row
+		double growth = 1.0;
+		for (int row = 0; row < size; row++) {
+			growth *= 1.0 + entryRoundings * EPS + errorRowSumMax / rowSums[row];
+		}
+		return 2.0 * ((growth - 1.0) * permanentBound + gamma * Math.abs(det));
+	}
+
+	// sign of the determinant of the size x size double-double matrix
+	// scr.matrixHi + scr.matrixLo if certain, 0 otherwise. entries carry a
+	// relative error of at most entryRoundings*EPS_DOUBLE_DOUBLE each.
+	// expands into the minors of the first rows (Laplace), so nothing is
+	// divided and, as for the unrolled floating point expansion, the error is
+	// bounded relative to the permanent of the absolute values. destroys the
+	// matrix.
+	private static int doubleDoubleDetSign(Scratch scr, int size, int entryRoundings) {
+		double[] matrixHi = scr.matrixHi;
+		double[] matrixLo = scr.matrixLo;
+		double[] minorsHi = scr.minorsHi;
+		double[] minorsLo = scr.minorsLo;
+		double[] rowSums = scr.rowSums;
+		if (!scaleColumns(matrixHi, matrixLo, rowSums, size)) {
+			return 0;
+		}
+		double permanentBound = 1.0;
+		for (int row = 0; row < size; row++) {
+			permanentBound *= rowSums[row];
+		}
+
+		// minor of the columns in subset (bit mask) and the first
+		// bitCount(subset) rows, expanded along its last row. subsets without
+		// one of their columns are smaller, so they are computed before.
+		minorsHi[0] = 1.0;
+		minorsLo[0] = 0.0;
+		for (int subset = 1; subset < 1 << size; subset++) {
+			int row = Integer.bitCount(subset) - 1;
+			double minorHi = 0.0;
+			double minorLo = 0.0;
+			int colIdx = 0;
+			for (int col = 0; col < size; col++) {
+				if ((subset & 1 << col) == 0) {
+					continue;
+				}
+				int subMinor = subset ^ 1 << col;
+				multiply(scr, matrixHi[row * size + col], matrixLo[row * size + col], minorsHi[subMinor],
+						minorsLo[subMinor]);
+				if (((row + colIdx) & 1) == 0) {
+					add(scr, minorHi, minorLo, scr.resultHi, scr.resultLo);
+				} else {
+					add(scr, minorHi, minorLo, -scr.resultHi, -scr.resultLo);
+				}
+				minorHi = scr.resultHi;
+				minorLo = scr.resultLo;
+				colIdx++;
+			}
+			minorsHi[subset] = minorHi;
+			minorsLo[subset] = minorLo;
+		}
+		double det = minorsHi[(1 << size) - 1];
+		double errorBound = 2.0 * (size * size + size * entryRoundings + 2) * EPS_DOUBLE_DOUBLE * permanentBound;
+		return Math.abs(det) > errorBound ? (det > 0.0 ? 1 : -1) : 0;
+	}
+
+	// scr.result = a - b exactly (Knuth's TwoSum)
+	private static void twoDiff(Scratch scr, double a, double b) {
+		double diff = a - b;
+		double bVirtual = a - diff;
+		double aVirtual = diff + bVirtual;
+		scr.resultHi = diff;
+		scr.resultLo = (a - aVirtual) - (b - bVirtual);
+	}
+
+	// scr.result = (xHi + xLo) + (yHi + yLo) in double-double (accurate
+	// addition, Joldes et al. algorithm 6)
+	private static void add(Scratch scr, double xHi, double xLo, double yHi, double yLo) {
+		double sumHi = xHi + yHi;
+		double yVirtual = sumHi - xHi;
+		double sumLo = (xHi - (sumHi - yVirtual)) + (yHi - yVirtual);
+		double tailHi = xLo + yLo;
+		double yLoVirtual = tailHi - xLo;
+		double tailLo = (xLo - (tailHi - yLoVirtual)) + (yLo - yLoVirtual);
+		sumLo += tailHi;
+		double vHi = sumHi + sumLo;
+		double vLo = sumLo - (vHi - sumHi);
+		vLo += tailLo;
+		scr.resultHi = vHi + vLo;
+		scr.resultLo = vLo - (scr.resultHi - vHi);
+	}
+
+	// scr.result = (xHi + xLo) * (yHi + yLo) in double-double (Joldes et al.
+	// algorithm 10, the exact product of the high parts by Dekker's splitting)
+	private static void multiply(Scratch scr, double xHi, double xLo, double yHi, double yLo) {
+		double productHi = xHi * yHi;
+		double xSplit = SPLITTER * xHi;
+		double xBig = xSplit - (xSplit - xHi);
+		double xSmall = xHi - xBig;
+		double ySplit = SPLITTER * yHi;
+		double yBig = ySplit - (ySplit - yHi);
+		double ySmall = yHi - yBig;
+		double productLo = xSmall * ySmall - (((productHi - xBig * yBig) - xSmall * yBig) - xBig * ySmall);
+		productLo += xHi * yLo + xLo * yHi;
+		scr.resultHi = productHi + productLo;
+		scr.resultLo = productLo - (scr.resultHi - productHi);
+	}
+
+	private static int orientationExact(Point[] points, double[] qCoords, int qOffset) {
+		int dim = points[0].store.dim;
+		int minExponent = minExponent(qCoords, qOffset, dim, Integer.MAX_VALUE);
+		for (int row = 0; row < dim; row++) {
+			minExponent = minExponent(points[row].coords(), points[row].offset(), dim, minExponent);
+		}
+		BigInteger[] qInts = toBigIntegers(qCoords, qOffset, dim, minExponent);
+		BigInteger[] matrix = new BigInteger[dim * dim];
+		for (int row = 0; row < dim; row++) {
+			BigInteger[] ints = toBigIntegers(points[row].coords(), points[row].offset(), dim, minExponent);
+			for (int col = 0; col < dim; col++) {
+				matrix[row * dim + col] = ints[col].subtract(qInts[col]);
+			}
+		}
+		return detSignExact(matrix, dim);
+	}
+
+	private static int insphereExact(Point[] points, Point pTop, double[] qCoords, int qOffset) {
+		int dim = points[0].store.dim;
+		int minExponent = minExponent(qCoords, qOffset, dim,
+				minExponent(pTop.coords(), pTop.offset(), dim, Integer.MAX_VALUE));
+		for (int row = 0; row < dim; row++) {
+			minExponent = minExponent(points[row].coords(), points[row].offset(), dim, minExponent);
+		}
+		BigInteger[] qInts = toBigIntegers(qCoords, qOffset, dim, minExponent);
+		BigInteger[] matrix = new BigInteger[(dim + 1) * (dim + 1)];
+		for (int row = 0; row < dim + 1; row++) {
+			Point p = row < dim ? points[row] : pTop;
+			BigInteger[] ints = toBigIntegers(p.coords(), p.offset(), dim, minExponent);
+			BigInteger squareSum = BigInteger.ZERO;
+			for (int col = 0; col < dim; col++) {
+				BigInteger diff = ints[col].subtract(qInts[col]);
+				matrix[row * (dim + 1) + col] = diff;
+				squareSum = squareSum.add(diff.multiply(diff));
+			}
+			// squares carry the scale factor twice, but scaling a column by a
+			// positive factor doesn't change the determinant's sign
+			matrix[row * (dim + 1) + dim] = squareSum;
+		}
+		return detSignExact(matrix, dim + 1);
+	}
+
+	// smallest exponent of the least significant mantissa bit of the non-zero
+	// entries of vals[offset..offset+count-1] and the given exponent
+	static int minExponent(double[] vals, int offset, int count, int minExponent) {
+		for (int idx = offset; idx < offset + count; idx++) {
+			double val = vals[idx];
+			if (val != 0.0) {
+				minExponent = Math.min(minExponent, Math.getExponent(val) - 52);
+			}
+		}
+		return minExponent;
+	}
+
+	// exact integer representations of vals[offset..offset+count-1], scaled by
+	// 2^-minExponent
+	static BigInteger[] toBigIntegers(double[] vals, int offset, int count, int minExponent) {
+		BigInteger[] ints = new BigInteger[count];
+		for (int i = 0; i < count; i++) {
+			double val = vals[offset + i];
+			if (val == 0.0) {
+				ints[i] = BigInteger.ZERO;
+				continue;
+			}
+			int exponent = Math.getExponent(val) - 52;
+			long bits = Double.doubleToRawLongBits(val);
+			long mantissa = bits & 0x000fffffffffffffL;
+			if (exponent >= Double.MIN_EXPONENT - 52) {
+				mantissa |= 0x0010000000000000L; // implicit leading bit
+			} else {
+				exponent = Double.MIN_EXPONENT - 52; // subnormal
+			}
+			BigInteger mantissaInt = BigInteger.valueOf(val < 0 ? -mantissa : mantissa);
+			ints[i] = mantissaInt.shiftLeft(exponent - minExponent);
+		}
+		return ints;
+	}
+
+	// sign of the determinant, see detExact. modifies vals.
+	private static int detSignExact(BigInteger[] vals, int size) {
+		return detExact(vals, size).signum();
+	}
+
+	// determinant via fraction-free (Bareiss) elimination. all divisions are
+	// exact, so no precision is lost. modifies vals.
+	static BigInteger detExact(BigInteger[] vals, int size) {
+		int sign = 1;
+		BigInteger pivotPrev = BigInteger.ONE;
+		for (int k = 0; k < size - 1; k++) {
+			// find a row with non-zero pivot
+			if (vals[k * size + k].signum() == 0) {
+				int rowSwap = k + 1;
+				while (rowSwap < size && vals[rowSwap * size + k].signum() == 0) {
+					rowSwap++;
+				}
+				if (rowSwap == size) {
+					return BigInteger.ZERO;
+				}
+				for (int col = k; col < size; col++) {
+					BigInteger tmp = vals[k * size + col];
+					vals[k * size + col] = vals[rowSwap * size + col];
+					vals[rowSwap * size + col] = tmp;
+				}
+				sign = -sign;
+			}
+			BigInteger pivot = vals[k * size + k];
+			for (int row = k + 1; row < size; row++) {
+				for (int col = k + 1; col < size; col++) {
+					vals[row * size + col] = pivot.multiply(vals[row * size + col])
+							.subtract(vals[row * size + k].multiply(vals[k * size + col])).divide(pivotPrev);
+				}
+			}
+			pivotPrev = pivot;
+		}
+		return sign > 0 ? vals[size * size - 1] : vals[size * size - 1].negate();
+	}
+
+}
@@ -1,41 +1,42 @@
 package delaunayKD.geometry;
 
-import static delaunayKD.AllSimplicesFinder.DIM;
-
-import javax.management.RuntimeErrorException;
-
-import delaunayKD.AllSimplicesFinder;
-import delaunayKD.misc.UtilityMethods;
+import delaunayKD.Enumerator;
 
 public class Simplex extends AbstractSimplex {
 
-	public double[] circumcenter = new double[DIM];
-	public double circumradius;
+	// circumsphere, only computed (and allocated) once read through
+	// circumcenter()/circumradius(). star clones share their original's.
+	// the radius is NaN until computed, and volatile so that threads seeing
+	// it also see the center (alpha faces may be extracted in parallel).
+	private double[] circumcenter;
+	private volatile double circumradius = Double.NaN;
+
+	// cached insphere test, only when caching predicates
+	private CachedPredicate insphere;
 
-	// convention: simplex has face 0 as base, with newest point as top point
+	// convention: simplex has face 0 as base, with newest point as top point.
+	// face i + 1 is opposite the point at index i of the base face.
 	public Simplex(Face[] faces, int lastPreviousKillerIndex) {
 		super(lastPreviousKillerIndex);
 		this.faces = faces;
 		introduceSelfToFaces();
-		if (AllSimplicesFinder.doAlphaBookkeeping) {
-			computeCircum();
-		}
 //		verify();
 	}
 
 	private void verify() {
+		int dim = faces.length - 1;
 		// determine involved points
-		Point[] points = new Point[DIM + 1];
-		for (int idx = 0; idx < DIM; idx++) {
+		Point[] points = new Point[dim + 1];
+		for (int idx = 0; idx < dim; idx++) {
 			points[idx] = faces[0].points()[idx];
 		}
 		for (Point p : faces[1].points()) {
 			if (!faces[0].hasVertex(p)) {
-				points[DIM] = p;
+				points[dim] = p;
 				break;
 			}
 		}
-		if (points[DIM] == null) {
+		if (points[dim] == null) {
 			throw new RuntimeException("duplicate face supplied to simplex");
 		}
 
@@ -51,7 +52,7 @@ public class Simplex extends AbstractSimplex {
 					}
 				}
 				if (!found) {
-					throw new RuntimeException("simplex doesn't have exactly " + (DIM + 1) + " points!");
+					throw new RuntimeException("simplex doesn't have exactly " + (dim + 1) + " points!");
 				}
 			}
 			// ensure each face faces the point that's not a vertex of that face
@@ -68,22 +69,23 @@ public class Simplex extends AbstractSimplex {
 
 	// p must be vertex of this simplex
 	public Face faceOpposite(Point p) {
-		for (Face face : faces) {
-			if (!face.hasVertex(p)) {
-				return face;
+		Point[] basePoints = faces[0].points();
+		for (int pIdx = 0; pIdx < basePoints.length; pIdx++) {
+			if (basePoints[pIdx] == p) {
+				return faces[pIdx + 1];
 			}
 		}
-		return null;
+		return faces[0];
 	}
 
+	// face must be an instance of a face of this simplex
 	public Point pointOpposite(Face face) {
-		for (Face face2 : faces) {
-			if (face2 != face) {
-				for (Point p : face2.points()) {
-					if (!face.hasVertex(p)) {
-						return p;
-					}
-				}
+		if (face.uniqueFace == faces[0].uniqueFace) {
+			return maxPoint();
+		}
+		for (int faceIdx = 1; faceIdx < faces.length; faceIdx++) {
+			if (faces[faceIdx].uniqueFace == face.uniqueFace) {
+				return faces[0].points()[faceIdx - 1];
 			}
 		}
 		return null;
@@ -91,76 +93,59 @@ public class Simplex extends AbstractSimplex {
 
 	@Override
 	public boolean containsPointInCircumsphere(Point q) {
+		Enumerator enumerator = faces[0].enumerator();
+		if (enumerator.cachePredicates) {
+			if (enumerator.metrics != null) {
+				enumerator.metrics.insphereTest();
+			}
+			return faces[0].isReverse ^ (insphere().sign(faces[0].points(), maxPoint(), q.coords(), q.offset()) > 0);
+		}
 		return faces[0].simplexContainsPointInCircumsphere(maxPoint(), q);
 	}
 
+	// star clones share the cached test with their original, which has the
+	// same base face and top point
+	private CachedPredicate insphere() {
+		if (insphere == null) {
+			insphere = original instanceof Simplex ? ((Simplex) original).insphere()
+					: CachedPredicate.insphere(faces[0].points(), maxPoint());
+		}
+		return insphere;
+	}
+
 	@Override
 	public String toString() {
 		return "(" + faces[0].toString() + ") + " + pointOpposite(faces[0]).i;
 	}
 
-	private void computeCircum() {
-		// TODO general implementation
-		if (DIM == 2) {
-			// https://en.wikipedia.org/wiki/Circumscribed_circle#Circumcenter_coordinates
-			Point a = faces[0].uniqueFace.points[0];
-			Point b = faces[0].uniqueFace.points[1];
-			Point c = pointOpposite(faces[0]);
-			double d = 2 * (a.v[0] * (b.v[1] - c.v[1]) + b.v[0] * (c.v[1] - a.v[1]) + c.v[0] * (a.v[1] - b.v[1]));
-			double ccX = ((a.v[0] * a.v[0] + a.v[1] * a.v[1]) * (b.v[1] - c.v[1])
-					+ (b.v[0] * b.v[0] + b.v[1] * b.v[1]) * (c.v[1] - a.v[1])
-					+ (c.v[0] * c.v[0] + c.v[1] * c.v[1]) * (a.v[1] - b.v[1])) / d;
-			double ccY = ((a.v[0] * a.v[0] + a.v[1] * a.v[1]) * (c.v[0] - b.v[0])
-					+ (b.v[0] * b.v[0] + b.v[1] * b.v[1]) * (a.v[0] - c.v[0])
-					+ (c.v[0] * c.v[0] + c.v[1] * c.v[1]) * (b.v[0] - a.v[0])) / d;
-			circumcenter[0] = ccX;
-			circumcenter[1] = ccY;
-			circumradius = Math.sqrt((a.v[0] - ccX) * (a.v[0] - ccX) + (a.v[1] - ccY) * (a.v[1] - ccY));
-		} else if (DIM == 3) {
-			// https://mathworld.wolfram.com/Circumsphere.html
-			Face f = faces[0];
-			Point[] points = new Point[DIM + 1];
-			for (int i = 0; i < DIM; i++) {
-				points[i] = f.uniqueFace.points[i];
-			}
-			points[DIM] = pointOpposite(f);
-			double a = UtilityMethods.det(new double[] { points[0].v[0], points[0].v[1], points[0].v[2], 1,
-					points[1].v[0], points[1].v[1], points[1].v[2], 1, points[2].v[0], points[2].v[1], points[2].v[2],
-					1, points[3].v[0], points[3].v[1], points[3].v[2], 1, }, 4);
-			double[] matrix = new double[] {
-					points[0].v[0] * points[0].v[0] + points[0].v[1] * points[0].v[1] + points[0].v[2] * points[0].v[2],
-					points[0].v[1], points[0].v[2], 1,
-					points[1].v[0] * points[1].v[0] + points[1].v[1] * points[1].v[1] + points[1].v[2] * points[1].v[2],
-					points[1].v[1], points[1].v[2], 1,
-					points[2].v[0] * points[2].v[0] + points[2].v[1] * points[2].v[1] + points[2].v[2] * points[2].v[2],
-					points[2].v[1], points[2].v[2], 1,
-					points[3].v[0] * points[3].v[0] + points[3].v[1] * points[3].v[1] + points[3].v[2] * points[3].v[2],
-					points[3].v[1], points[3].v[2], 1 };
-			double dx = UtilityMethods.det(matrix, 4);
-			matrix[1] = points[0].v[0];
-			matrix[5] = points[1].v[0];
-			matrix[9] = points[2].v[0];
-			matrix[13] = points[3].v[0];
-			double dy = -1 * UtilityMethods.det(matrix, 4);
-			matrix[2] = points[0].v[1];
-			matrix[6] = points[1].v[1];
-			matrix[10] = points[2].v[1];
-			matrix[14] = points[3].v[1];
-			double dz = UtilityMethods.det(matrix, 4);
-			matrix[3] = points[0].v[2];
-			matrix[7] = points[1].v[2];
-			matrix[11] = points[2].v[2];
-			matrix[15] = points[3].v[2];
-			double c = UtilityMethods.det(matrix, 4);
-
-			circumcenter[0] = dx / (2 * a);
-			circumcenter[1] = dy / (2 * a);
-			circumcenter[2] = dz / (2 * a);
-
-			circumradius = Math.sqrt(dx * dx + dy * dy + dz * dz - 4 * a * c) / (2 * Math.abs(a));
-		} else {
-			throw new RuntimeErrorException(new Error("Circumcenter computation not implemented for d = " + DIM));
+	public double[] circumcenter() {
+		Simplex owner = circumsphereOwner();
+		if (Double.isNaN(owner.circumradius)) {
+			owner.computeCircum();
 		}
+		return owner.circumcenter;
+	}
+
+	public double circumradius() {
+		Simplex owner = circumsphereOwner();
+		double radius = owner.circumradius;
+		return Double.isNaN(radius) ? owner.computeCircum() : radius;
+	}
+
+	// star clones have the same vertices as their original
+	private Simplex circumsphereOwner() {
+		return original instanceof Simplex ? (Simplex) original : this;
+	}
+
+	// may run concurrently for the same simplex, which is harmless: both
+	// threads compute the same sphere
+	private double computeCircum() {
+		double[] center = new double[faces.length - 1];
+		double radius = Circumspheres.circumsphere(faces[0].uniqueFace.points, pointOpposite(faces[0]), center);
+		circumcenter = center;
+		// publishes circumcenter
+		circumradius = radius;
+		return radius;
 	}
 
 }
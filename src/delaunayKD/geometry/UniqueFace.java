@@ -8,6 +8,15 @@ public class UniqueFace {
 
 	public Point[] points;
 
+	// points with the smallest and largest index, and the sum of all point
+	// indices (see Face.pointOppositeIndex())
+	public final Point minPoint;
+	public final Point maxPoint;
+	public final long indexSum;
+
+	// cached orientation test (front face), only when caching predicates
+	public CachedPredicate orientation;
+
 	// this face's instance in minPoint's star (front face!)
 	public Face faceStar;
 
@@ -15,12 +24,37 @@ public class UniqueFace {
 	// whether this face is already in the list of unique faces
 	public boolean picked = false;
 	// for each orientation of this face: list of simplex query rects, nicely
-	// sorted
-	public ArrayList<AlignedQueryRects> rectsFront = new ArrayList<AlignedQueryRects>();
-	public ArrayList<AlignedQueryRects> rectsBack = new ArrayList<AlignedQueryRects>();
+	// sorted. only allocated when doing alpha bookkeeping.
+	public ArrayList<AlignedQueryRects> rectsFront;
+	public ArrayList<AlignedQueryRects> rectsBack;
+	// for streaming alpha face extraction: one instance of this face (either
+	// side) per row that has simplices attached to it
+	public ArrayList<Face> rowFaces;
+
+	// id + 1 of this face while a checkpoint is written, 0 otherwise
+	public int checkpointRef = 0;
 
 	public UniqueFace(Point[] points) {
 		this.points = points;
+		Point min = points[0];
+		Point max = points[0];
+		long sum = 0;
+		for (Point p : points) {
+			if (p.i < min.i) {
+				min = p;
+			}
+			if (p.i > max.i) {
+				max = p;
+			}
+			sum += p.i;
+		}
+		minPoint = min;
+		maxPoint = max;
+		indexSum = sum;
+		if (points[0].enumerator.doAlphaBookkeeping) {
+			rectsFront = new ArrayList<AlignedQueryRects>();
+			rectsBack = new ArrayList<AlignedQueryRects>();
+		}
 	}
 
 	public void setFaceStar(Face faceStar) {
@@ -1,20 +1,38 @@
 package delaunayKD.misc;
 
+import java.io.File;
 import java.util.ArrayList;
 
 import delaunayKD.AllSimplicesFinder;
 import delaunayKD.AlphaFaceExtractor;
+import delaunayKD.AlphaFaceSink;
+import delaunayKD.Enumerator;
+import delaunayKD.OnlineEnumerator;
 import delaunayKD.alpha.QueryRectAlphaHalfFace;
 import delaunayKD.geometry.AbstractSimplex;
 import delaunayKD.geometry.Point;
+import delaunayKD.geometry.PointStore;
 import delaunayKD.geometry.Simplex;
+import delaunayKD.query.AlphaShapeIndex;
+import delaunayKD.query.SubsequenceIndex;
+import delaunayKD.store.PointFiles;
+import delaunayKD.store.SimplexCursor;
+import delaunayKD.store.SimplexStoreReader;
+import delaunayKD.store.SimplexStoreWriter;
 import delaunayKD.triangulator.IncrementalTriangulator;
 
 public class DoSomething {
 
 	public static void main(String[] args) {
-		// some code examples
+		// some code examples, each in its own method, so their results are
+		// garbage by the time the benchmarks run
+		examples3D();
+		examples2D();
+		examplesAlphaShape();
+		benchmarks();
+	}
 
+	private static void examples3D() {
 		System.out.println("Code with 3D examples...");
 		// generate some points (point at points.get(i) must have "time stamp"
 		// set to i, i.e. points.get(i).i==i for all i)
@@ -27,6 +45,43 @@ public class DoSomething {
 		countSimplicesAndFacets(result);
 		identifySimplicesAndFacetsOfSubsequence(result, 123, 456);
 
+		// for many queries against the same result, an index answers them in
+		// time proportional to their output instead of scanning all simplices
+		SubsequenceIndex index = new SubsequenceIndex(result);
+		System.out.println("\t" + "The indexed Delaunay triangulation of the subsequence [123, 456] contains "
+				+ index.query(123, 456).size() + " simplices and facets.");
+
+		// if only subsequences of bounded length are of interest, memory usage
+		// can be bounded by the maximum subsequence length
+		ArrayList<AbstractSimplex> resultWindowed = AllSimplicesFinder
+				.findAllSimplicesInWindows(UtilityMethods.generatePointsSphere(1 << 10), 100);
+		identifySimplicesAndFacetsOfSubsequence(resultWindowed, 123, 222);
+
+		// results can also be streamed to a file instead of being kept on the
+		// heap, and be queried from there later on
+		File storeFile = new File(System.getProperty("java.io.tmpdir"), "simplices.dkds");
+		SimplexStoreWriter writer = new SimplexStoreWriter(storeFile, AllSimplicesFinder.DIM);
+		ArrayList<Point> pointsStored = UtilityMethods.generatePointsSphere(1 << 10);
+		AllSimplicesFinder.findAllSimplices(pointsStored, new IncrementalTriangulator(), writer);
+		// the simplices still alive are written on close
+		writer.close(pointsStored);
+		SimplexCursor cursor = new SimplexStoreReader(storeFile).query(123, 456);
+		int storedCount = 0;
+		while (cursor.next()) {
+			storedCount++;
+		}
+		System.out.println("\t" + "The stored Delaunay triangulation of the subsequence [123, 456] contains "
+				+ storedCount + " simplices and facets.");
+
+		// real data is loaded from binary or CSV files into a point store,
+		// which keeps all coordinates in one array
+		File pointFile = new File(System.getProperty("java.io.tmpdir"), "points.bin");
+		PointFiles.writeBinary(points.get(0).store, pointFile);
+		PointStore loaded = PointFiles.readBinary(pointFile, AllSimplicesFinder.DIM);
+		System.out.println("\t" + "Loaded " + loaded.size() + " points from " + pointFile + ".");
+	}
+
+	private static void examples2D() {
 		System.out.println("\n" + "Code with 2D examples...");
 		AllSimplicesFinder.DIM = 2; // change dimension
 
@@ -34,7 +89,28 @@ public class DoSomething {
 		ArrayList<Point> points2D = UtilityMethods.generatePointsSphere(1 << 12);
 		AllSimplicesFinder.findAllSimplices(points2D);
 
-		// compute the temporal alpha-shape
+		// points arriving one at a time, e.g. from a live stream, can be
+		// appended to a running enumeration
+		OnlineEnumerator online = new OnlineEnumerator(new Enumerator(2));
+		int killedCount = 0;
+		File checkpointFile = new File(System.getProperty("java.io.tmpdir"), "enumeration.dkcp");
+		for (Point p : UtilityMethods.generatePoints(1 << 10)) {
+			online.append(p.coord(0), p.coord(1));
+			killedCount += online.killed.size();
+			// long runs can be checkpointed now and then, and be resumed from
+			// the last checkpoint after a crash
+			if (online.pointCount() == 1 << 9) {
+				online.checkpoint(checkpointFile);
+				online = OnlineEnumerator.resume(checkpointFile);
+			}
+		}
+		online.finish();
+		System.out.println("\t" + "The online enumeration found " + online.simplexCount() + " simplices and facets, "
+				+ killedCount + " of which were killed by a later point.");
+	}
+
+	private static void examplesAlphaShape() {
+		// compute the temporal alpha-shape (still in 2D)
 		ArrayList<Point> pointsAlpha = UtilityMethods.generatePoints(1 << 12);
 		AllSimplicesFinder.doAlphaBookkeeping = true;
 		IncrementalTriangulator incTriangulator = new IncrementalTriangulator();
@@ -48,6 +124,28 @@ public class DoSomething {
 		// do something with the result
 		identifyAlphaFacesOfSubsequence(resultAlpha, 123, 456, 0.01);
 
+		// alternatively, extract the temporal alpha-shape during the
+		// enumeration, which releases the bookkeeping of each face as soon as
+		// its cuboids are final
+		Enumerator enumeratorAlpha = new Enumerator(2, true, false);
+		final ArrayList<QueryRectAlphaHalfFace> resultAlphaStreamed = new ArrayList<QueryRectAlphaHalfFace>();
+		enumeratorAlpha.streamAlphaFaces(new AlphaFaceSink() {
+			@Override
+			public void alphaFaceFound(QueryRectAlphaHalfFace alphaFace) {
+				resultAlphaStreamed.add(alphaFace);
+			}
+		});
+		enumeratorAlpha.findAllSimplices(UtilityMethods.generatePoints(1 << 12));
+		System.out.println("\tStreamed temporal alpha-shape contains " + resultAlphaStreamed.size() + " cuboids.");
+
+		// an index answers repeated queries, e.g. while varying alpha, in time
+		// proportional to their output
+		AlphaShapeIndex alphaIndex = new AlphaShapeIndex(resultAlpha);
+		System.out.println("\t" + "The indexed alpha-shape of the subsequence [123, 456] contains "
+				+ alphaIndex.query(123, 456, 0.01).size() + " alpha-faces for alpha-value 0.01.");
+	}
+
+	private static void benchmarks() {
 		System.out.println("\n" + "Code with benchmarks...");
 		System.out.println("Data will be printed with the following columns:" + "\n\t"
 				+ "dimension, points inserted so far, simplices and facets found so far, time in ms spent so far");
@@ -55,6 +153,11 @@ public class DoSomething {
 		System.out.println("4D moment curve benchmark:");
 		Benchmarks.main(new String[] { "1000", "4", "1", "moment" });
 
+		// without noise, the moment curve is nearly degenerate, most
+		// predicates need more than double precision
+		System.out.println("4D exact moment curve benchmark:");
+		Benchmarks.main(new String[] { "100", "4", "1", "exactMoment" });
+
 		System.out.println("5D unit hypercube benchmark:");
 		Benchmarks.main(new String[] { "1000", "5", "1", "unit" });
 	}
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Random;
 
 import delaunayKD.geometry.Point;
+import delaunayKD.geometry.PointStore;
 
 public class UtilityMethods {
 
@@ -19,42 +20,100 @@ public class UtilityMethods {
 
 	// generates points u.a.r. in the unit hypercube
 	public static ArrayList<Point> generatePoints(Random random, int count) {
-		ArrayList<Point> points = new ArrayList<Point>(count);
+		return generatePoints(random, count, DIM);
+	}
+
+	public static ArrayList<Point> generatePoints(Random random, int count, int dim) {
+		PointStore store = new PointStore(dim, count);
+		double[] vals = new double[dim];
 		for (int i = 0; i < count; i++) {
-			double[] vals = new double[DIM];
-			for (int dimIdx = 0; dimIdx < DIM; dimIdx++) {
+			for (int dimIdx = 0; dimIdx < dim; dimIdx++) {
 				vals[dimIdx] = random.nextDouble();
 			}
-			points.add(new Point(vals, i));
+			store.append(vals);
 		}
-		return points;
+		return store.points();
 	}
 
 	public static ArrayList<Point> generatePointsSphere(Random random, int count) {
-		int counter = 0;
-		ArrayList<Point> points = new ArrayList<Point>(count);
-		while (counter < count) {
-			double[] vals = new double[DIM];
+		return generatePointsSphere(random, count, DIM);
+	}
+
+	public static ArrayList<Point> generatePointsSphere(Random random, int count, int dim) {
+		PointStore store = new PointStore(dim, count);
+		double[] vals = new double[dim];
+		while (store.size() < count) {
 			double squareSum = 0.0;
-			for (int dimIdx = 0; dimIdx < DIM; dimIdx++) {
+			for (int dimIdx = 0; dimIdx < dim; dimIdx++) {
 				vals[dimIdx] = 2 * random.nextDouble() - 1;
 				squareSum += vals[dimIdx] * vals[dimIdx];
 			}
 			if (squareSum < 1.0) {
-				for (int dimIdx = 0; dimIdx < DIM; dimIdx++) {
+				for (int dimIdx = 0; dimIdx < dim; dimIdx++) {
 					vals[dimIdx] = 5 + 5 * vals[dimIdx];
 				}
-				points.add(new Point(vals, counter));
-				counter++;
+				store.append(vals);
 			}
 		}
-		return points;
+		return store.points();
 	}
 
-	// computes the determinant of a DIM x DIM matrix
+	// noisy moment curve to avoid precision errors
+	public static ArrayList<Point> generatePointsMomentCurve(Random random, int count, int dim) {
+		PointStore store = new PointStore(dim, count);
+		double[] vals = new double[dim];
+		for (int i = 0; i < count; i++) {
+			double val = i;
+			for (int dimIdx = 0; dimIdx < dim; dimIdx++) {
+				vals[dimIdx] = val + 10 * random.nextDouble();
+				val *= i;
+			}
+			store.append(vals);
+		}
+		return store.points();
+	}
+
+	// points (i, i^2, ..., i^dim) on the moment curve for i = 0, ..., count - 1,
+	// without noise. nearly degenerate, so many predicates need more than
+	// double precision. the output grows much faster than for the noisy curve
+	// (cubically in count in 4D), so count must be small.
+	public static ArrayList<Point> generatePointsExactMomentCurve(int count, int dim) {
+		PointStore store = new PointStore(dim, count);
+		double[] vals = new double[dim];
+		for (int i = 0; i < count; i++) {
+			double val = i;
+			for (int dimIdx = 0; dimIdx < dim; dimIdx++) {
+				vals[dimIdx] = val;
+				val *= i;
+			}
+			store.append(vals);
+		}
+		return store.points();
+	}
+
+	// largest matrix size whose determinant det() computes by unrolled
+	// cofactor expansion
+	public static final int MAX_UNROLLED_DET_SIZE = 6;
+
+	// scratch space for determinants computed by elimination, per thread
+	private static final ThreadLocal<double[]> detScratch = new ThreadLocal<double[]>() {
+		@Override
+		protected double[] initialValue() {
+			return new double[0];
+		}
+	};
+
+	// computes the determinant of a size x size matrix
 	// vals contains the rows of the matrix concatenated
+	// sizes up to MAX_UNROLLED_DET_SIZE are unrolled, larger sizes use
+	// elimination on scratch space
+	// so vals is left untouched and nothing is allocated
 	public static double det(double[] vals, int size) {
-		if (size == 4) {
+		if (size == 6) {
+			return det6(vals);
+		} else if (size == 5) {
+			return det5(vals);
+		} else if (size == 4) {
 			return vals[0]
 					* (vals[5] * (vals[10] * vals[15] - vals[11] * vals[14])
 							- vals[6] * (vals[9] * vals[15] - vals[11] * vals[13])
@@ -78,25 +137,200 @@ public class UtilityMethods {
 		} else if (size < 2) {
 			return -1.0;
 		} else {
-			double sum = 0.0;
-			int factor = 1;
-			for (int col = 0; col < size; col++) {
-				double[] subMatrix = new double[(size - 1) * (size - 1)];
-				for (int row = 0; row < size - 1; row++) {
-					// copy row, leaving out the current column
-					int colIndex = 0;
-					for (int col2 = 0; col2 < size; col2++) {
-						if (col2 != col) {
-							subMatrix[row * (size - 1) + colIndex] = vals[(row + 1) * size + col2];
-							colIndex++;
-						}
-					}
+			double[] scratch = detScratch.get();
+			if (scratch.length < size * size) {
+				scratch = new double[size * size];
+				detScratch.set(scratch);
+			}
+			System.arraycopy(vals, 0, scratch, 0, size * size);
+			return detByElimination(scratch, size);
+		}
+	}
+
+	// 5x5 by cofactor expansion along the first row, sharing the minors
+	// of the lower rows
+	private static double det5(double[] vals) {
+		// 2x2 minors of the last 2 rows
+		double m01 = vals[15] * vals[21] - vals[16] * vals[20];
+		double m02 = vals[15] * vals[22] - vals[17] * vals[20];
+		double m03 = vals[15] * vals[23] - vals[18] * vals[20];
+		double m04 = vals[15] * vals[24] - vals[19] * vals[20];
+		double m12 = vals[16] * vals[22] - vals[17] * vals[21];
+		double m13 = vals[16] * vals[23] - vals[18] * vals[21];
+		double m14 = vals[16] * vals[24] - vals[19] * vals[21];
+		double m23 = vals[17] * vals[23] - vals[18] * vals[22];
+		double m24 = vals[17] * vals[24] - vals[19] * vals[22];
+		double m34 = vals[18] * vals[24] - vals[19] * vals[23];
+		// 3x3 minors of the last 3 rows
+		double m012 = vals[10] * m12 - vals[11] * m02 + vals[12] * m01;
+		double m013 = vals[10] * m13 - vals[11] * m03 + vals[13] * m01;
+		double m014 = vals[10] * m14 - vals[11] * m04 + vals[14] * m01;
+		double m023 = vals[10] * m23 - vals[12] * m03 + vals[13] * m02;
+		double m024 = vals[10] * m24 - vals[12] * m04 + vals[14] * m02;
+		double m034 = vals[10] * m34 - vals[13] * m04 + vals[14] * m03;
+		double m123 = vals[11] * m23 - vals[12] * m13 + vals[13] * m12;
+		double m124 = vals[11] * m24 - vals[12] * m14 + vals[14] * m12;
+		double m134 = vals[11] * m34 - vals[13] * m14 + vals[14] * m13;
+		double m234 = vals[12] * m34 - vals[13] * m24 + vals[14] * m23;
+		// 4x4 minors of the last 4 rows
+		double m0123 = vals[5] * m123 - vals[6] * m023 + vals[7] * m013 - vals[8] * m012;
+		double m0124 = vals[5] * m124 - vals[6] * m024 + vals[7] * m014 - vals[9] * m012;
+		double m0134 = vals[5] * m134 - vals[6] * m034 + vals[8] * m014 - vals[9] * m013;
+		double m0234 = vals[5] * m234 - vals[7] * m034 + vals[8] * m024 - vals[9] * m023;
+		double m1234 = vals[6] * m234 - vals[7] * m134 + vals[8] * m124 - vals[9] * m123;
+		return vals[0] * m1234 - vals[1] * m0234 + vals[2] * m0134 - vals[3] * m0124 + vals[4] * m0123;
+	}
+
+	// 6x6 by cofactor expansion along the first row, sharing the minors
+	// of the lower rows
+	private static double det6(double[] vals) {
+		// 2x2 minors of the last 2 rows
+		double m01 = vals[24] * vals[31] - vals[25] * vals[30];
+		double m02 = vals[24] * vals[32] - vals[26] * vals[30];
+		double m03 = vals[24] * vals[33] - vals[27] * vals[30];
+		double m04 = vals[24] * vals[34] - vals[28] * vals[30];
+		double m05 = vals[24] * vals[35] - vals[29] * vals[30];
+		double m12 = vals[25] * vals[32] - vals[26] * vals[31];
+		double m13 = vals[25] * vals[33] - vals[27] * vals[31];
+		double m14 = vals[25] * vals[34] - vals[28] * vals[31];
+		double m15 = vals[25] * vals[35] - vals[29] * vals[31];
+		double m23 = vals[26] * vals[33] - vals[27] * vals[32];
+		double m24 = vals[26] * vals[34] - vals[28] * vals[32];
+		double m25 = vals[26] * vals[35] - vals[29] * vals[32];
+		double m34 = vals[27] * vals[34] - vals[28] * vals[33];
+		double m35 = vals[27] * vals[35] - vals[29] * vals[33];
+		double m45 = vals[28] * vals[35] - vals[29] * vals[34];
+		// 3x3 minors of the last 3 rows
+		double m012 = vals[18] * m12 - vals[19] * m02 + vals[20] * m01;
+		double m013 = vals[18] * m13 - vals[19] * m03 + vals[21] * m01;
+		double m014 = vals[18] * m14 - vals[19] * m04 + vals[22] * m01;
+		double m015 = vals[18] * m15 - vals[19] * m05 + vals[23] * m01;
+		double m023 = vals[18] * m23 - vals[20] * m03 + vals[21] * m02;
+		double m024 = vals[18] * m24 - vals[20] * m04 + vals[22] * m02;
+		double m025 = vals[18] * m25 - vals[20] * m05 + vals[23] * m02;
+		double m034 = vals[18] * m34 - vals[21] * m04 + vals[22] * m03;
+		double m035 = vals[18] * m35 - vals[21] * m05 + vals[23] * m03;
+		double m045 = vals[18] * m45 - vals[22] * m05 + vals[23] * m04;
+		double m123 = vals[19] * m23 - vals[20] * m13 + vals[21] * m12;
+		double m124 = vals[19] * m24 - vals[20] * m14 + vals[22] * m12;
+		double m125 = vals[19] * m25 - vals[20] * m15 + vals[23] * m12;
+		double m134 = vals[19] * m34 - vals[21] * m14 + vals[22] * m13;
+		double m135 = vals[19] * m35 - vals[21] * m15 + vals[23] * m13;
+		double m145 = vals[19] * m45 - vals[22] * m15 + vals[23] * m14;
+		double m234 = vals[20] * m34 - vals[21] * m24 + vals[22] * m23;
+		double m235 = vals[20] * m35 - vals[21] * m25 + vals[23] * m23;
+		double m245 = vals[20] * m45 - vals[22] * m25 + vals[23] * m24;
+		double m345 = vals[21] * m45 - vals[22] * m35 + vals[23] * m34;
+		// 4x4 minors of the last 4 rows
+		double m0123 = vals[12] * m123 - vals[13] * m023 + vals[14] * m013 - vals[15] * m012;
+		double m0124 = vals[12] * m124 - vals[13] * m024 + vals[14] * m014 - vals[16] * m012;
+		double m0125 = vals[12] * m125 - vals[13] * m025 + vals[14] * m015 - vals[17] * m012;
+		double m0134 = vals[12] * m134 - vals[13] * m034 + vals[15] * m014 - vals[16] * m013;
+		double m0135 = vals[12] * m135 - vals[13] * m035 + vals[15] * m015 - vals[17] * m013;
+		double m0145 = vals[12] * m145 - vals[13] * m045 + vals[16] * m015 - vals[17] * m014;
+		double m0234 = vals[12] * m234 - vals[14] * m034 + vals[15] * m024 - vals[16] * m023;
+		double m0235 = vals[12] * m235 - vals[14] * m035 + vals[15] * m025 - vals[17] * m023;
+		double m0245 = vals[12] * m245 - vals[14] * m045 + vals[16] * m025 - vals[17] * m024;
+		double m0345 = vals[12] * m345 - vals[15] * m045 + vals[16] * m035 - vals[17] * m034;
+		double m1234 = vals[13] * m234 - vals[14] * m134 + vals[15] * m124 - vals[16] * m123;
+		double m1235 = vals[13] * m235 - vals[14] * m135 + vals[15] * m125 - vals[17] * m123;
+		double m1245 = vals[13] * m245 - vals[14] * m145 + vals[16] * m125 - vals[17] * m124;
+		double m1345 = vals[13] * m345 - vals[15] * m145 + vals[16] * m135 - vals[17] * m134;
+		double m2345 = vals[14] * m345 - vals[15] * m245 + vals[16] * m235 - vals[17] * m234;
+		// 5x5 minors of the last 5 rows
+		double m01234 = vals[6] * m1234 - vals[7] * m0234 + vals[8] * m0134 - vals[9] * m0124 + vals[10] * m0123;
+		double m01235 = vals[6] * m1235 - vals[7] * m0235 + vals[8] * m0135 - vals[9] * m0125 + vals[11] * m0123;
+		double m01245 = vals[6] * m1245 - vals[7] * m0245 + vals[8] * m0145 - vals[10] * m0125 + vals[11] * m0124;
+		double m01345 = vals[6] * m1345 - vals[7] * m0345 + vals[9] * m0145 - vals[10] * m0135 + vals[11] * m0134;
+		double m02345 = vals[6] * m2345 - vals[8] * m0345 + vals[9] * m0245 - vals[10] * m0235 + vals[11] * m0234;
+		double m12345 = vals[7] * m2345 - vals[8] * m1345 + vals[9] * m1245 - vals[10] * m1235 + vals[11] * m1234;
+		return vals[0] * m12345 - vals[1] * m02345 + vals[2] * m01345 - vals[3] * m01245 + vals[4] * m01235 - vals[5] * m01234;
+	}
+
+	// computes the determinant of a size x size matrix by Gaussian elimination
+	// with partial pivoting in O(size^3). overwrites vals with the LU
+	// decomposition of the row-permuted matrix: U on and above the diagonal,
+	// the multipliers of L (unit diagonal omitted) below.
+	public static double detByElimination(double[] vals, int size) {
+		int sign = decomposeLU(vals, null, size);
+		if (sign == 0) {
+			return 0.0;
+		}
+		double det = sign;
+		for (int k = 0; k < size; k++) {
+			det *= vals[k * size + k];
+		}
+		return det;
+	}
+
+	// solves the size x size system vals * x = rhs by Gaussian elimination
+	// with partial pivoting, overwriting vals with its LU decomposition (see
+	// detByElimination) and writing x to rhs. returns false if the matrix is
+	// singular.
+	public static boolean solveByElimination(double[] vals, double[] rhs, int size) {
+		if (decomposeLU(vals, rhs, size) == 0) {
+			return false;
+		}
+		// forward substitution with L, rhs is permuted already
+		for (int row = 1; row < size; row++) {
+			for (int k = 0; k < row; k++) {
+				rhs[row] -= vals[row * size + k] * rhs[k];
+			}
+		}
+		// back substitution with U
+		for (int row = size - 1; row >= 0; row--) {
+			double sum = rhs[row];
+			for (int col = row + 1; col < size; col++) {
+				sum -= vals[row * size + col] * rhs[col];
+			}
+			rhs[row] = sum / vals[row * size + row];
+		}
+		return true;
+	}
+
+	// LU decomposition with partial pivoting in place, as described in
+	// detByElimination. rows of rhs, if not null, are swapped along with the
+	// rows of vals. returns the sign of the row permutation, or 0 if the matrix
+	// is singular (vals is then only partially decomposed).
+	private static int decomposeLU(double[] vals, double[] rhs, int size) {
+		int sign = 1;
+		for (int k = 0; k < size; k++) {
+			// pick largest pivot in column k
+			int pivotRow = k;
+			double pivotAbs = Math.abs(vals[k * size + k]);
+			for (int row = k + 1; row < size; row++) {
+				double candidateAbs = Math.abs(vals[row * size + k]);
+				if (candidateAbs > pivotAbs) {
+					pivotRow = row;
+					pivotAbs = candidateAbs;
+				}
+			}
+			if (pivotAbs == 0.0) {
+				return 0;
+			}
+			if (pivotRow != k) {
+				for (int col = 0; col < size; col++) {
+					double tmp = vals[k * size + col];
+					vals[k * size + col] = vals[pivotRow * size + col];
+					vals[pivotRow * size + col] = tmp;
+				}
+				if (rhs != null) {
+					double tmp = rhs[k];
+					rhs[k] = rhs[pivotRow];
+					rhs[pivotRow] = tmp;
+				}
+				sign = -sign;
+			}
+			double pivot = vals[k * size + k];
+			for (int row = k + 1; row < size; row++) {
+				double factor = vals[row * size + k] / pivot;
+				vals[row * size + k] = factor;
+				for (int col = k + 1; col < size; col++) {
+					vals[row * size + col] -= factor * vals[k * size + col];
 				}
-				sum += factor * vals[col] * det(subMatrix, size - 1);
-				factor *= -1;
 			}
-			return sum;
 		}
+		return sign;
 	}
 
 }
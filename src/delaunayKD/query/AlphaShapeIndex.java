@@ -0,0 +1,79 @@
+package delaunayKD.query;
+
+import java.util.ArrayList;
+
+import delaunayKD.alpha.QueryRectAlphaHalfFace;
+
+// Static index over the output of AlphaFaceExtractor, answering which alpha
+// faces are part of the alpha shape of a subsequence [startIndex, endIndex]
+// for a given alpha. q is part of it iff
+// q.lowerMin < startIndex <= q.lowerMax, q.upperMin <= endIndex < q.upperMax
+// and q.radiusMin <= alpha <= q.radiusMax,
+// i.e. iff (startIndex, endIndex, alpha) lies in the box
+// [lowerMin + 1, lowerMax] x [upperMin, upperMax - 1] x [radiusMin, radiusMax].
+// These boxes are indexed by nested segment trees over startIndex and
+// endIndex whose nodes hold interval trees over alpha, so a query takes
+// O(log^3 n + output) time and the index O(n log^2 n) space.
+public class AlphaShapeIndex {
+
+	private final ArrayList<QueryRectAlphaHalfFace> alphaFaces;
+	private final Stabbing root;
+
+	public AlphaShapeIndex(ArrayList<QueryRectAlphaHalfFace> alphaFaces) {
+		this.alphaFaces = new ArrayList<QueryRectAlphaHalfFace>(alphaFaces);
+		int n = alphaFaces.size();
+		double[][] lo = new double[3][n];
+		double[][] hi = new double[3][n];
+		int[] validIds = new int[n];
+		int validCount = 0;
+		for (int id = 0; id < n; id++) {
+			QueryRectAlphaHalfFace q = alphaFaces.get(id);
+			lo[0][id] = (double) q.lowerMin + 1;
+			hi[0][id] = q.lowerMax;
+			lo[1][id] = q.upperMin;
+			hi[1][id] = (double) q.upperMax - 1;
+			lo[2][id] = q.radiusMin;
+			hi[2][id] = q.radiusMax;
+			// radius ranges may be empty up to rounding of the circumradii,
+			// such faces are never part of an alpha shape
+			if (lo[2][id] <= hi[2][id]) {
+				validIds[validCount++] = id;
+			}
+		}
+		root = new SegmentStabbing(lo, hi, validIds, 0, validCount, 0);
+	}
+
+	// ids of the stabbed rectangles, per thread
+	private static final ThreadLocal<IntList> idsScratch = new ThreadLocal<IntList>() {
+		@Override
+		protected IntList initialValue() {
+			return new IntList(64);
+		}
+	};
+
+	public int size() {
+		return alphaFaces.size();
+	}
+
+	// alpha faces of the alpha shape of the subsequence [startIndex, endIndex]
+	// (both inclusive) for the given alpha
+	public ArrayList<QueryRectAlphaHalfFace> query(int startIndex, int endIndex, double alpha) {
+		ArrayList<QueryRectAlphaHalfFace> result = new ArrayList<QueryRectAlphaHalfFace>();
+		query(startIndex, endIndex, alpha, result);
+		return result;
+	}
+
+	// appends the result of query(startIndex, endIndex, alpha) to result.
+	// queries don't modify the index, so it may be queried by many threads at
+	// once.
+	public void query(int startIndex, int endIndex, double alpha, ArrayList<QueryRectAlphaHalfFace> result) {
+		IntList ids = idsScratch.get();
+		ids.clear();
+		root.stab(new double[] { startIndex, endIndex, alpha }, ids);
+		result.ensureCapacity(result.size() + ids.size);
+		for (int idx = 0; idx < ids.size; idx++) {
+			result.add(alphaFaces.get(ids.vals[idx]));
+		}
+	}
+
+}
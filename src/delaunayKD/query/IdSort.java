@@ -0,0 +1,59 @@
+package delaunayKD.query;
+
+// sorting ids by a key per id, without boxing
+class IdSort {
+
+	// stably sorts ids[from..to-1] by keys[id], ascending
+	static void sort(int[] ids, int from, int to, double[] keys) {
+		if (to - from < 2) {
+			return;
+		}
+		int[] scratch = new int[to - from];
+		mergeSort(ids, from, to, keys, scratch);
+	}
+
+	private static void mergeSort(int[] ids, int from, int to, double[] keys, int[] scratch) {
+		if (to - from <= 16) {
+			// insertion sort
+			for (int idx = from + 1; idx < to; idx++) {
+				int id = ids[idx];
+				double key = keys[id];
+				int pos = idx;
+				while (pos > from && keys[ids[pos - 1]] > key) {
+					ids[pos] = ids[pos - 1];
+					pos--;
+				}
+				ids[pos] = id;
+			}
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		mergeSort(ids, from, mid, keys, scratch);
+		mergeSort(ids, mid, to, keys, scratch);
+		if (keys[ids[mid - 1]] <= keys[ids[mid]]) {
+			return; // already in order
+		}
+		System.arraycopy(ids, from, scratch, 0, to - from);
+		int left = 0;
+		int leftEnd = mid - from;
+		int right = leftEnd;
+		int rightEnd = to - from;
+		for (int idx = from; idx < to; idx++) {
+			if (right == rightEnd || (left < leftEnd && keys[scratch[left]] <= keys[scratch[right]])) {
+				ids[idx] = scratch[left++];
+			} else {
+				ids[idx] = scratch[right++];
+			}
+		}
+	}
+
+	// reverses ids[from..to-1]
+	static void reverse(int[] ids, int from, int to) {
+		for (int left = from, right = to - 1; left < right; left++, right--) {
+			int tmp = ids[left];
+			ids[left] = ids[right];
+			ids[right] = tmp;
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+package delaunayKD.query;
+
+import java.util.Arrays;
+
+// growable list of ints
+class IntList {
+	int[] vals;
+	int size = 0;
+
+	IntList(int capacity) {
+		vals = new int[Math.max(capacity, 1)];
+	}
+
+	void add(int val) {
+		if (size == vals.length) {
+			vals = Arrays.copyOf(vals, 2 * size);
+		}
+		vals[size++] = val;
+	}
+
+	void clear() {
+		size = 0;
+	}
+}
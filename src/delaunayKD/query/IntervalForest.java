@@ -0,0 +1,129 @@
+package delaunayKD.query;
+
+import java.util.Arrays;
+
+// Stabbing over the last dimension: centered interval trees, one per subset
+// of boxes, all stored in the same flat arrays and addressed by their root
+// node. each node stores the intervals containing its center twice, sorted
+// by lower bound ascending and by upper bound descending, so a query reports
+// them by scanning a prefix of one of the lists. O(log n + output) per
+// query, O(n) space.
+class IntervalForest {
+
+	private final double[] lo;
+	private final double[] hi;
+	private final int dimIdx;
+
+	// nodes of all trees, each tree in preorder
+	private double[] centers;
+	private int[] lefts; // child indices, -1 if none
+	private int[] rights;
+	private int[] starts; // of the node's ids in byLo and byHi
+	private int[] counts;
+	private int nodeCount = 0;
+	private int[] byLo;
+	private int[] byHi;
+	private int idsPlaced = 0;
+
+	// forest for trees over at most idCapacity boxes in total
+	IntervalForest(double[][] lo, double[][] hi, int idCapacity, int dimIdx) {
+		this.lo = lo[dimIdx];
+		this.hi = hi[dimIdx];
+		this.dimIdx = dimIdx;
+		// every node holds at least one box
+		centers = new double[idCapacity];
+		lefts = new int[idCapacity];
+		rights = new int[idCapacity];
+		starts = new int[idCapacity];
+		counts = new int[idCapacity];
+		byLo = new int[idCapacity];
+		byHi = new int[idCapacity];
+	}
+
+	// adds a tree over the boxes ids[start..end-1], returns its root (-1 if
+	// empty)
+	int add(int[] ids, int start, int end) {
+		int idCount = end - start;
+		return build(Arrays.copyOfRange(ids, start, end), idCount, new double[2 * idCount]);
+	}
+
+	// drops the unused capacity once all trees are added
+	void trim() {
+		centers = Arrays.copyOf(centers, nodeCount);
+		lefts = Arrays.copyOf(lefts, nodeCount);
+		rights = Arrays.copyOf(rights, nodeCount);
+		starts = Arrays.copyOf(starts, nodeCount);
+		counts = Arrays.copyOf(counts, nodeCount);
+		byLo = Arrays.copyOf(byLo, idsPlaced);
+		byHi = Arrays.copyOf(byHi, idsPlaced);
+	}
+
+	// builds the subtree of the given ids, returns its node index. ids and
+	// endpoints are scratch space.
+	private int build(int[] ids, int idCount, double[] endpoints) {
+		if (idCount == 0) {
+			return -1;
+		}
+		// median of all endpoints, so each side gets at most half the ids
+		for (int idx = 0; idx < idCount; idx++) {
+			endpoints[2 * idx] = lo[ids[idx]];
+			endpoints[2 * idx + 1] = hi[ids[idx]];
+		}
+		Arrays.sort(endpoints, 0, 2 * idCount);
+		double center = endpoints[idCount];
+
+		int node = nodeCount++;
+		centers[node] = center;
+		starts[node] = idsPlaced;
+		int leftCount = 0;
+		int rightCount = 0;
+		int[] leftIds = new int[idCount];
+		int[] rightIds = new int[idCount];
+		for (int idx = 0; idx < idCount; idx++) {
+			int id = ids[idx];
+			if (hi[id] < center) {
+				leftIds[leftCount++] = id;
+			} else if (lo[id] > center) {
+				rightIds[rightCount++] = id;
+			} else {
+				byLo[idsPlaced] = id;
+				byHi[idsPlaced] = id;
+				idsPlaced++;
+			}
+		}
+		counts[node] = idsPlaced - starts[node];
+		IdSort.sort(byLo, starts[node], idsPlaced, lo);
+		IdSort.sort(byHi, starts[node], idsPlaced, hi);
+		IdSort.reverse(byHi, starts[node], idsPlaced);
+		lefts[node] = build(leftIds, leftCount, endpoints);
+		rights[node] = build(rightIds, rightCount, endpoints);
+		return node;
+	}
+
+	// reports the boxes of the tree with the given root containing q
+	void stab(int root, double[] q, IntList out) {
+		double val = q[dimIdx];
+		int node = root;
+		while (node != -1) {
+			int start = starts[node];
+			int end = start + counts[node];
+			if (val < centers[node]) {
+				for (int idx = start; idx < end && lo[byLo[idx]] <= val; idx++) {
+					out.add(byLo[idx]);
+				}
+				node = lefts[node];
+			} else if (val > centers[node]) {
+				for (int idx = start; idx < end && hi[byHi[idx]] >= val; idx++) {
+					out.add(byHi[idx]);
+				}
+				node = rights[node];
+			} else {
+				for (int idx = start; idx < end; idx++) {
+					out.add(byLo[idx]);
+				}
+				return;
+			}
+		}
+	}
+
+}
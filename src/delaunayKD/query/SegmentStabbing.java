@@ -0,0 +1,173 @@
+package delaunayKD.query;
+
+import java.util.Arrays;
+
+// Stabbing over all but the last dimension: a segment tree over dimension
+// dimIdx, whose nodes each index the boxes they hold over the remaining
+// dimensions. a box is held by the O(log n) nodes covering its interval, and
+// a query visits the nodes on the path to its leaf, so with k dimensions a
+// query takes O(log^k n + output) and the index O(n log^(k-1) n) space.
+// most nodes hold only a few boxes, those are kept as slices of one flat id
+// array and tested one by one instead of getting an index object each. the
+// interval trees over the last dimension share one IntervalForest per tree.
+class SegmentStabbing implements Stabbing {
+
+	// nodes holding at most this many boxes are scanned instead of indexed
+	static final int MAX_SCAN_SIZE = 16;
+
+	private final double[][] lo;
+	private final double[][] hi;
+	private final int dimIdx;
+	// distinct interval endpoints in ascending order. leaf 2 * e stands for
+	// endpoints[e], leaf 2 * e + 1 for the open gap to the next endpoint.
+	private final double[] endpoints;
+	private final int leafOffset;
+	// node 1 is the root, node n has children 2n and 2n+1. nodes with more
+	// than MAX_SCAN_SIZE boxes have an index over the remaining dimensions:
+	// nodes[n] if two or more remain, otherwise the tree intervalRoots[n] of
+	// intervals (each null if unused, roots are -1 for small nodes). the
+	// other nodes hold the boxes scanIds[scanStarts[n]..scanStarts[n+1]-1].
+	private final Stabbing[] nodes;
+	private final IntervalForest intervals;
+	private final int[] intervalRoots;
+	private final int[] scanStarts;
+	private final int[] scanIds;
+
+	// index over the boxes ids[start..end-1]
+	SegmentStabbing(double[][] lo, double[][] hi, int[] ids, int start, int end, int dimIdx) {
+		this.lo = lo;
+		this.hi = hi;
+		this.dimIdx = dimIdx;
+		double[] values = new double[2 * (end - start)];
+		for (int idx = start; idx < end; idx++) {
+			values[2 * (idx - start)] = lo[dimIdx][ids[idx]];
+			values[2 * (idx - start) + 1] = hi[dimIdx][ids[idx]];
+		}
+		Arrays.sort(values);
+		int distinct = 0;
+		for (int idx = 0; idx < values.length; idx++) {
+			if (distinct == 0 || values[idx] != values[distinct - 1]) {
+				values[distinct++] = values[idx];
+			}
+		}
+		endpoints = Arrays.copyOf(values, distinct);
+		// no padding to a power of two: the bottom-up decomposition of a leaf
+		// range yields exactly the nodes that are ancestors of its leaves
+		leafOffset = Math.max(2 * distinct - 1, 1);
+
+		// assign boxes to the nodes covering their leaf range, in two passes
+		// (count, then fill) to avoid per-node lists. node n's ids end up in
+		// nodeIds[nodeStarts[n]..nodeStarts[n+1]-1].
+		int[] nodeStarts = new int[2 * leafOffset + 1];
+		for (int idx = start; idx < end; idx++) {
+			assign(lo, hi, ids[idx], nodeStarts, null);
+		}
+		for (int node = 1; node < nodeStarts.length; node++) {
+			nodeStarts[node] += nodeStarts[node - 1];
+		}
+		int[] nodeIds = new int[nodeStarts[nodeStarts.length - 1]];
+		int[] nodeCursors = Arrays.copyOf(nodeStarts, nodeStarts.length);
+		for (int idx = start; idx < end; idx++) {
+			assign(lo, hi, ids[idx], nodeCursors, nodeIds);
+		}
+
+		// index the large nodes, move the boxes of the small ones into
+		// scanIds (in place, their slices only move to the front)
+		boolean lastTree = dimIdx + 2 == lo.length;
+		int largeIdCount = 0;
+		for (int node = 1; node < 2 * leafOffset; node++) {
+			if (nodeStarts[node + 1] - nodeStarts[node] > MAX_SCAN_SIZE) {
+				largeIdCount += nodeStarts[node + 1] - nodeStarts[node];
+			}
+		}
+		nodes = largeIdCount > 0 && !lastTree ? new Stabbing[2 * leafOffset] : null;
+		intervals = largeIdCount > 0 && lastTree ? new IntervalForest(lo, hi, largeIdCount, dimIdx + 1) : null;
+		intervalRoots = intervals != null ? new int[2 * leafOffset] : null;
+		int[] scanStarts = nodeCursors;
+		int scanCount = 0;
+		for (int node = 1; node < 2 * leafOffset; node++) {
+			int nodeStart = nodeStarts[node];
+			int nodeEnd = nodeStarts[node + 1];
+			scanStarts[node] = scanCount;
+			if (nodeEnd - nodeStart <= MAX_SCAN_SIZE) {
+				System.arraycopy(nodeIds, nodeStart, nodeIds, scanCount, nodeEnd - nodeStart);
+				scanCount += nodeEnd - nodeStart;
+				if (intervalRoots != null) {
+					intervalRoots[node] = -1;
+				}
+			} else if (lastTree) {
+				intervalRoots[node] = intervals.add(nodeIds, nodeStart, nodeEnd);
+			} else {
+				nodes[node] = new SegmentStabbing(lo, hi, nodeIds, nodeStart, nodeEnd, dimIdx + 1);
+			}
+		}
+		scanStarts[2 * leafOffset] = scanCount;
+		if (intervals != null) {
+			intervals.trim();
+		}
+		this.scanStarts = scanStarts;
+		scanIds = Arrays.copyOf(nodeIds, scanCount);
+	}
+
+	private int leafOf(double val) {
+		int pos = Arrays.binarySearch(endpoints, val);
+		return pos >= 0 ? 2 * pos : 2 * (-pos - 1) - 1;
+	}
+
+	// visits the nodes covering box id's leaf range. without nodeIds, counts
+	// the box at nodeCursors[node + 1], otherwise stores it at
+	// nodeCursors[node] and advances that cursor.
+	private void assign(double[][] lo, double[][] hi, int id, int[] nodeCursors, int[] nodeIds) {
+		int left = leafOf(lo[dimIdx][id]) + leafOffset;
+		int right = leafOf(hi[dimIdx][id]) + leafOffset + 1;
+		for (; left < right; left >>= 1, right >>= 1) {
+			if ((left & 1) == 1) {
+				assign(left++, id, nodeCursors, nodeIds);
+			}
+			if ((right & 1) == 1) {
+				assign(--right, id, nodeCursors, nodeIds);
+			}
+		}
+	}
+
+	private static void assign(int node, int id, int[] nodeCursors, int[] nodeIds) {
+		if (nodeIds == null) {
+			nodeCursors[node + 1]++;
+		} else {
+			nodeIds[nodeCursors[node]++] = id;
+		}
+	}
+
+	@Override
+	public void stab(double[] q, IntList out) {
+		double val = q[dimIdx];
+		if (endpoints.length == 0 || val < endpoints[0] || val > endpoints[endpoints.length - 1]) {
+			return;
+		}
+		for (int node = leafOf(val) + leafOffset; node >= 1; node >>= 1) {
+			if (nodes != null && nodes[node] != null) {
+				nodes[node].stab(q, out);
+			} else if (intervalRoots != null && intervalRoots[node] != -1) {
+				intervals.stab(intervalRoots[node], q, out);
+			} else {
+				scan(node, q, out);
+			}
+		}
+	}
+
+	// reports the boxes of a small node containing q in the remaining
+	// dimensions
+	private void scan(int node, double[] q, IntList out) {
+		for (int idx = scanStarts[node]; idx < scanStarts[node + 1]; idx++) {
+			int id = scanIds[idx];
+			boolean contained = true;
+			for (int d = dimIdx + 1; d < lo.length && contained; d++) {
+				contained = lo[d][id] <= q[d] && q[d] <= hi[d][id];
+			}
+			if (contained) {
+				out.add(id);
+			}
+		}
+	}
+
+}
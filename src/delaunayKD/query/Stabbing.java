@@ -0,0 +1,10 @@
+package delaunayKD.query;
+
+// static index over axis-aligned closed boxes, given per dimension by lower
+// and upper bounds lo[dimIdx][id] and hi[dimIdx][id]. reports the ids of all
+// boxes containing a query point.
+interface Stabbing {
+
+	void stab(double[] q, IntList out);
+
+}
@@ -0,0 +1,72 @@
+package delaunayKD.query;
+
+import java.util.ArrayList;
+
+import delaunayKD.geometry.AbstractSimplex;
+
+// Static index over an enumeration result, answering which simplices and
+// facets are part of the Delaunay triangulation of a subsequence
+// [startIndex, endIndex]. s is part of it iff
+// s.lastPreviousKillerIndex < startIndex <= s.minPoint().i and
+// s.maxPoint().i <= endIndex < s.firstSubsequentKillerIndex,
+// i.e. iff the query point (startIndex, endIndex) lies in the rectangle
+// [lastPreviousKillerIndex + 1, min] x [max, firstSubsequentKillerIndex - 1].
+// These rectangles are indexed by a segment tree over startIndex whose nodes
+// hold interval trees over endIndex, so a query takes O(log^2 n + output)
+// time and the index O(n log n) space.
+public class SubsequenceIndex {
+
+	private final ArrayList<AbstractSimplex> simplices;
+	private final Stabbing root;
+
+	public SubsequenceIndex(ArrayList<AbstractSimplex> simplices) {
+		this.simplices = new ArrayList<AbstractSimplex>(simplices);
+		int n = simplices.size();
+		double[][] lo = new double[2][n];
+		double[][] hi = new double[2][n];
+		int[] allIds = new int[n];
+		for (int id = 0; id < n; id++) {
+			AbstractSimplex s = simplices.get(id);
+			// in double, so the row 0 bounds don't overflow
+			lo[0][id] = (double) s.lastPreviousKillerIndex + 1;
+			hi[0][id] = s.minPoint().i;
+			lo[1][id] = s.maxPoint().i;
+			hi[1][id] = (double) s.firstSubsequentKillerIndex - 1;
+			allIds[id] = id;
+		}
+		root = new SegmentStabbing(lo, hi, allIds, 0, n, 0);
+	}
+
+	// ids of the stabbed rectangles, per thread
+	private static final ThreadLocal<IntList> idsScratch = new ThreadLocal<IntList>() {
+		@Override
+		protected IntList initialValue() {
+			return new IntList(64);
+		}
+	};
+
+	public int size() {
+		return simplices.size();
+	}
+
+	// simplices and facets of the Delaunay triangulation of the subsequence
+	// [startIndex, endIndex] (both inclusive)
+	public ArrayList<AbstractSimplex> query(int startIndex, int endIndex) {
+		ArrayList<AbstractSimplex> result = new ArrayList<AbstractSimplex>();
+		query(startIndex, endIndex, result);
+		return result;
+	}
+
+	// appends the result of query(startIndex, endIndex) to result. queries
+	// don't modify the index, so it may be queried by many threads at once.
+	public void query(int startIndex, int endIndex, ArrayList<AbstractSimplex> result) {
+		IntList ids = idsScratch.get();
+		ids.clear();
+		root.stab(new double[] { startIndex, endIndex }, ids);
+		result.ensureCapacity(result.size() + ids.size);
+		for (int idx = 0; idx < ids.size; idx++) {
+			result.add(simplices.get(ids.vals[idx]));
+		}
+	}
+
+}
@@ -0,0 +1,237 @@
+package delaunayKD.store;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import delaunayKD.geometry.PointStore;
+
+// Loads point sequences from files directly into a PointStore, without
+// intermediate objects per point. The order of the points in the file is
+// their order in the sequence, i.e. the point in row i gets index i.
+//
+// Binary files are raw little-endian doubles, dim per point and nothing else
+// (e.g. numpy's tofile() of an n x dim float64 array). They are memory-mapped
+// and copied into the store in bulk.
+//
+// CSV files have one point per line with dim numbers separated by commas,
+// semicolons or whitespace. Empty lines and lines starting with # are
+// skipped, as is the first line if it is a header.
+public class PointFiles {
+
+	// the file is mapped in segments of at most this many bytes
+	private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+	public static PointStore readBinary(File file, int dim) {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				long fileLength = channel.size();
+				long pointBytes = 8L * dim;
+				if (fileLength % pointBytes != 0) {
+					throw new RuntimeException(file + " is not a file of " + dim + "D points: its length " + fileLength
+							+ " is not a multiple of " + pointBytes);
+				}
+				long pointCount = fileLength / pointBytes;
+				if (pointCount * dim > Integer.MAX_VALUE - 8) {
+					throw new RuntimeException(file + " has too many points (" + pointCount + ") for a point store");
+				}
+				double[] coords = new double[(int) (pointCount * dim)];
+				// segments end on whole doubles
+				long segmentBytes = MAX_SEGMENT_BYTES - MAX_SEGMENT_BYTES % 8;
+				int coordIdx = 0;
+				for (long pos = 0; pos < fileLength; pos += segmentBytes) {
+					long length = Math.min(segmentBytes, fileLength - pos);
+					MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+					DoubleBuffer doubles = segment.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+					int count = doubles.remaining();
+					doubles.get(coords, coordIdx, count);
+					coordIdx += count;
+				}
+				return new PointStore(dim, coords, (int) pointCount);
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// writes the points of store in the format read by readBinary
+	public static void writeBinary(PointStore store, File file) {
+		try {
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+				int coordCount = store.size() * store.dim;
+				for (int coordIdx = 0; coordIdx < coordCount; coordIdx++) {
+					if (buffer.remaining() < 8) {
+						out.write(buffer.array(), 0, buffer.position());
+						buffer.clear();
+					}
+					buffer.putDouble(store.coords[coordIdx]);
+				}
+				out.write(buffer.array(), 0, buffer.position());
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static PointStore readCsv(File file, int dim, boolean hasHeader) {
+		try {
+			Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+			try {
+				return new CsvParser(reader, dim, file.toString()).parse(hasHeader);
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// parses numbers from a char buffer refilled from the reader, appending
+	// each line's coordinates to the store
+	private static class CsvParser {
+
+		private final Reader reader;
+		private final int dim;
+		private final String name;
+		private final char[] buffer = new char[1 << 16];
+		private int pos = 0;
+		private int end = 0;
+		private long line = 1;
+		// current field, Double.parseDouble needs a String
+		private final StringBuilder field = new StringBuilder(32);
+
+		CsvParser(Reader reader, int dim, String name) {
+			this.reader = reader;
+			this.dim = dim;
+			this.name = name;
+		}
+
+		PointStore parse(boolean hasHeader) throws IOException {
+			PointStore store = new PointStore(dim, 1 << 10);
+			double[] vals = new double[dim];
+			if (hasHeader) {
+				skipLine();
+			}
+			int c;
+			while ((c = peek()) >= 0) {
+				if (c == '\n' || c == '\r') {
+					skipLine();
+					continue;
+				}
+				if (c == '#') {
+					skipLine();
+					continue;
+				}
+				int count = 0;
+				while (true) {
+					skipWhitespace();
+					c = peek();
+					if (c < 0 || c == '\n' || c == '\r') {
+						break;
+					}
+					if (count == dim) {
+						throw error("more than " + dim + " coordinates");
+					}
+					vals[count++] = readNumber();
+					skipWhitespace();
+					c = peek();
+					if (c == ',' || c == ';') {
+						pos++;
+					}
+				}
+				if (count == 0) {
+					skipLine(); // blank line
+					continue;
+				}
+				if (count < dim) {
+					throw error("expected " + dim + " coordinates, got " + count);
+				}
+				store.append(vals);
+				skipLine();
+			}
+			return store;
+		}
+
+		// next char without consuming it, or -1 at the end of input
+		private int peek() throws IOException {
+			if (pos == end) {
+				end = reader.read(buffer, 0, buffer.length);
+				pos = 0;
+				if (end <= 0) {
+					end = 0;
+					return -1;
+				}
+			}
+			return buffer[pos];
+		}
+
+		// consumes the rest of the current line including its terminator
+		private void skipLine() throws IOException {
+			int c;
+			while ((c = peek()) >= 0) {
+				pos++;
+				if (c == '\n') {
+					line++;
+					return;
+				}
+				if (c == '\r') {
+					if (peek() == '\n') {
+						pos++;
+					}
+					line++;
+					return;
+				}
+			}
+		}
+
+		private void skipWhitespace() throws IOException {
+			int c;
+			while ((c = peek()) == ' ' || c == '\t') {
+				pos++;
+			}
+		}
+
+		private double readNumber() throws IOException {
+			field.setLength(0);
+			int c;
+			while ((c = peek()) >= 0 && c != ',' && c != ';' && c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				field.append((char) c);
+				pos++;
+			}
+			if (field.length() == 0) {
+				throw error("empty coordinate");
+			}
+			try {
+				return Double.parseDouble(field.toString());
+			} catch (NumberFormatException e) {
+				throw error("invalid coordinate \"" + field + "\"");
+			}
+		}
+
+		private RuntimeException error(String message) {
+			return new RuntimeException(name + ", line " + line + ": " + message);
+		}
+
+	}
+
+}
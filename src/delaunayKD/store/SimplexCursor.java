@@ -0,0 +1,134 @@
+package delaunayKD.store;
+
+import java.nio.ByteBuffer;
+
+// Position in a SimplexStoreReader. next() decodes the next (matching) record
+// into the public fields, which are overwritten by the following call:
+//
+// SimplexCursor cursor = reader.query(123, 456);
+// while (cursor.next()) {
+// ... cursor.vertices[0..cursor.vertexCount-1] ...
+// }
+public class SimplexCursor {
+
+	// record data
+	public boolean isFacet;
+	// for facets: whether the facet faces the side on which vertices[0..dim-1]
+	// are positively oriented
+	public boolean facesPositive;
+	public int lastPreviousKillerIndex;
+	public int firstSubsequentKillerIndex;
+	// vertex indices in ascending order
+	public final int[] vertices;
+	public int vertexCount;
+
+	private final SimplexStoreReader reader;
+	private final boolean filter;
+	private final int startIndex;
+	private final int endIndex;
+
+	// current block
+	private int blockIdx = -1;
+	private ByteBuffer segment;
+	private int recordCount = 0;
+	private int flagsPos;
+	private int lastPreviousKillerPos;
+	private int minPos;
+	private int maxPos;
+	private int firstSubsequentKillerPos;
+	private int varintPos;
+	private int recordIdx = 0;
+
+	SimplexCursor(SimplexStoreReader reader, boolean filter, int startIndex, int endIndex) {
+		this.reader = reader;
+		this.filter = filter;
+		this.startIndex = startIndex;
+		this.endIndex = endIndex;
+		vertices = new int[reader.dim + 1];
+	}
+
+	public int minIndex() {
+		return vertices[0];
+	}
+
+	public int maxIndex() {
+		return vertices[vertexCount - 1];
+	}
+
+	// advances to the next record (matching the query, if any). returns false
+	// once all records were visited.
+	public boolean next() {
+		while (true) {
+			while (recordIdx == recordCount) {
+				if (!nextBlock()) {
+					return false;
+				}
+			}
+			int idx = recordIdx++;
+			byte flags = segment.get(flagsPos + idx);
+			int count = SimplexStoreFormat.vertexCount(flags, reader.dim);
+			int lastPreviousKiller = segment.getInt(lastPreviousKillerPos + 4 * idx);
+			int min = segment.getInt(minPos + 4 * idx);
+			int max = segment.getInt(maxPos + 4 * idx);
+			int firstSubsequentKiller = segment.getInt(firstSubsequentKillerPos + 4 * idx);
+			if (filter && !(lastPreviousKiller < startIndex && min >= startIndex && max <= endIndex
+					&& firstSubsequentKiller > endIndex)) {
+				// skip the record's varints
+				for (int vIdx = 1; vIdx < count - 1; vIdx++) {
+					while ((segment.get(varintPos++) & 0x80) != 0) {
+					}
+				}
+				continue;
+			}
+			isFacet = (flags & SimplexStoreFormat.FLAG_FACET) != 0;
+			facesPositive = (flags & SimplexStoreFormat.FLAG_FACES_POSITIVE) != 0;
+			lastPreviousKillerIndex = lastPreviousKiller;
+			firstSubsequentKillerIndex = firstSubsequentKiller;
+			vertexCount = count;
+			vertices[0] = min;
+			for (int vIdx = 1; vIdx < count - 1; vIdx++) {
+				vertices[vIdx] = vertices[vIdx - 1] + readVarint();
+			}
+			vertices[count - 1] = max;
+			return true;
+		}
+	}
+
+	private boolean nextBlock() {
+		blockIdx++;
+		if (filter) {
+			while (blockIdx < reader.blockCount() && !reader.blockMayMatch(blockIdx, startIndex, endIndex)) {
+				blockIdx++;
+			}
+		}
+		if (blockIdx >= reader.blockCount()) {
+			recordCount = 0;
+			recordIdx = 0;
+			return false;
+		}
+		segment = reader.blockSegment(blockIdx);
+		recordCount = reader.blockRecordCount(blockIdx);
+		recordIdx = 0;
+		flagsPos = reader.blockOffset(blockIdx) + SimplexStoreFormat.BLOCK_HEADER_BYTES;
+		lastPreviousKillerPos = flagsPos + recordCount;
+		minPos = lastPreviousKillerPos + 4 * recordCount;
+		maxPos = minPos + 4 * recordCount;
+		firstSubsequentKillerPos = maxPos + 4 * recordCount;
+		varintPos = firstSubsequentKillerPos + 4 * recordCount;
+		return true;
+	}
+
+	private int readVarint() {
+		int val = 0;
+		int shift = 0;
+		while (true) {
+			byte b = segment.get(varintPos++);
+			val |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return val;
+			}
+			shift += 7;
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+package delaunayKD.store;
+
+// Binary format of enumeration results (all ints big endian):
+//
+// file header: magic, version, dim, record count (long, -1 until the writer
+// was closed properly, readers then read all complete blocks)
+//
+// blocks, each with a header: record count, body length in bytes, maximum
+// of the records' min vertices and minimum of their max vertices (for
+// pruning queries), and a columnar body:
+// - flags (1 byte per record, see FLAG_*)
+// - lastPreviousKillerIndex column
+// - min vertex column
+// - max vertex column
+// - firstSubsequentKillerIndex column
+// - vertex column: per record, the vertices between min and max in ascending
+//   order, each as varint encoded difference to its predecessor (so a
+//   simplex has dim-1 entries, a facet dim-2)
+class SimplexStoreFormat {
+
+	static final int MAGIC = 0x444B4453; // "DKDS"
+	static final int VERSION = 1;
+
+	static final int FILE_HEADER_BYTES = 20;
+	static final int RECORD_COUNT_OFFSET = 12;
+	static final int BLOCK_HEADER_BYTES = 16;
+
+	// record is a facet (else a proper simplex)
+	static final byte FLAG_FACET = 1;
+	// facet faces the side on which the vertices in ascending order are
+	// positively oriented (w.r.t. Predicates.orientation)
+	static final byte FLAG_FACES_POSITIVE = 2;
+
+	// bytes per record in the fixed width columns
+	static final int FIXED_RECORD_BYTES = 1 + 4 * 4;
+
+	static int vertexCount(byte flags, int dim) {
+		return (flags & FLAG_FACET) != 0 ? dim : dim + 1;
+	}
+
+}
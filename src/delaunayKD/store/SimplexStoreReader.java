@@ -0,0 +1,152 @@
+package delaunayKD.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+// Reads a file written by SimplexStoreWriter. The file is memory-mapped, and
+// records are decoded in place into a reusable SimplexCursor, so neither
+// iteration nor queries allocate per record. Files of runs that didn't close
+// their writer are readable up to the last complete block.
+public class SimplexStoreReader {
+
+	// a block and the mapped segment of the file containing it
+	private static class Block {
+		MappedByteBuffer segment;
+		int offset; // of the block header, within segment
+		int recordCount;
+		int maxOfMin;
+		int minOfMax;
+	}
+
+	// mapped segments are limited to whole blocks within this many bytes
+	private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+	public final int dim;
+	// whether the writer was closed properly
+	public final boolean complete;
+	private final ArrayList<Block> blocks = new ArrayList<Block>();
+	private long recordCount = 0;
+
+	public SimplexStoreReader(File file) {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				long fileLength = channel.size();
+				ByteBuffer header = ByteBuffer.allocate(SimplexStoreFormat.FILE_HEADER_BYTES);
+				readFully(channel, header, 0);
+				if (header.getInt(0) != SimplexStoreFormat.MAGIC) {
+					throw new RuntimeException(file + " is not a simplex store");
+				}
+				if (header.getInt(4) != SimplexStoreFormat.VERSION) {
+					throw new RuntimeException("unsupported simplex store version " + header.getInt(4));
+				}
+				dim = header.getInt(8);
+				long storedRecordCount = header.getLong(SimplexStoreFormat.RECORD_COUNT_OFFSET);
+				complete = storedRecordCount >= 0;
+				mapBlocks(channel, fileLength);
+				if (complete && storedRecordCount != recordCount) {
+					throw new RuntimeException("simplex store is corrupt: expected " + storedRecordCount
+							+ " records, found " + recordCount);
+				}
+			} finally {
+				// mappings stay valid after closing the channel
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// scans the block headers and maps the file in segments of whole blocks
+	private void mapBlocks(FileChannel channel, long fileLength) throws IOException {
+		ByteBuffer blockHeader = ByteBuffer.allocate(SimplexStoreFormat.BLOCK_HEADER_BYTES);
+		long segmentStart = SimplexStoreFormat.FILE_HEADER_BYTES;
+		long pos = segmentStart;
+		ArrayList<Block> segmentBlocks = new ArrayList<Block>();
+		while (pos + SimplexStoreFormat.BLOCK_HEADER_BYTES <= fileLength) {
+			blockHeader.clear();
+			readFully(channel, blockHeader, pos);
+			long blockEnd = pos + SimplexStoreFormat.BLOCK_HEADER_BYTES + blockHeader.getInt(4);
+			if (blockEnd > fileLength) {
+				break; // truncated block of an interrupted run
+			}
+			if (blockEnd - segmentStart > MAX_SEGMENT_BYTES && !segmentBlocks.isEmpty()) {
+				mapSegment(channel, segmentStart, pos, segmentBlocks);
+				segmentStart = pos;
+			}
+			Block block = new Block();
+			block.offset = (int) (pos - segmentStart);
+			block.recordCount = blockHeader.getInt(0);
+			block.maxOfMin = blockHeader.getInt(8);
+			block.minOfMax = blockHeader.getInt(12);
+			segmentBlocks.add(block);
+			recordCount += block.recordCount;
+			pos = blockEnd;
+		}
+		if (!segmentBlocks.isEmpty()) {
+			mapSegment(channel, segmentStart, pos, segmentBlocks);
+		}
+	}
+
+	private void mapSegment(FileChannel channel, long start, long end, ArrayList<Block> segmentBlocks)
+			throws IOException {
+		MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		for (Block block : segmentBlocks) {
+			block.segment = segment;
+			blocks.add(block);
+		}
+		segmentBlocks.clear();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long pos) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, pos + buffer.position()) < 0) {
+				throw new RuntimeException("unexpected end of simplex store");
+			}
+		}
+	}
+
+	public long recordCount() {
+		return recordCount;
+	}
+
+	// cursor over all records
+	public SimplexCursor cursor() {
+		return new SimplexCursor(this, false, 0, 0);
+	}
+
+	// cursor over the simplices and facets of the Delaunay triangulation of
+	// the subsequence [startIndex, endIndex] (both inclusive)
+	public SimplexCursor query(int startIndex, int endIndex) {
+		return new SimplexCursor(this, true, startIndex, endIndex);
+	}
+
+	int blockCount() {
+		return blocks.size();
+	}
+
+	// whether block blockIdx may contain records within [startIndex, endIndex]
+	boolean blockMayMatch(int blockIdx, int startIndex, int endIndex) {
+		Block block = blocks.get(blockIdx);
+		return block.maxOfMin >= startIndex && block.minOfMax <= endIndex;
+	}
+
+	ByteBuffer blockSegment(int blockIdx) {
+		return blocks.get(blockIdx).segment;
+	}
+
+	int blockOffset(int blockIdx) {
+		return blocks.get(blockIdx).offset;
+	}
+
+	int blockRecordCount(int blockIdx) {
+		return blocks.get(blockIdx).recordCount;
+	}
+
+}
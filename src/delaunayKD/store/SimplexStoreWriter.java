@@ -0,0 +1,320 @@
+package delaunayKD.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import delaunayKD.SimplexSink;
+import delaunayKD.geometry.AbstractSimplex;
+import delaunayKD.geometry.Facet;
+import delaunayKD.geometry.Point;
+import delaunayKD.geometry.Simplex;
+
+// Writes enumeration results to a file (see SimplexStoreFormat), to be passed
+// as sink to AllSimplicesFinder.findAllSimplices. A record is written once a
+// simplex's lifetime is final, i.e. when it is killed, or on close(points)
+// for the simplices still alive, which are found by walking the stars of the
+// points (see Star.collectAliveSimplices). Records are collected in batches
+// which a background thread encodes and writes. If the writer falls behind,
+// the enumeration blocks once maxPendingBatches batches are waiting.
+public class SimplexStoreWriter implements SimplexSink {
+
+	// a batch of records in column form
+	private static class Batch {
+		final byte[] flags;
+		final int[] lastPreviousKillerIndices;
+		final int[] firstSubsequentKillerIndices;
+		// sorted vertex indices, dim+1 per record
+		final int[] vertices;
+		int size = 0;
+
+		Batch(int capacity, int dim) {
+			flags = new byte[capacity];
+			lastPreviousKillerIndices = new int[capacity];
+			firstSubsequentKillerIndices = new int[capacity];
+			vertices = new int[capacity * (dim + 1)];
+		}
+	}
+
+	// tells the writer thread to finish
+	private static final Batch END = new Batch(0, 0);
+
+	public final int dim;
+	private final int batchSize;
+	private final FileChannel channel;
+	private final BlockingQueue<Batch> queue;
+	private final Thread writerThread;
+	// first failure of the writer thread, rethrown to the enumeration
+	private volatile Throwable failure = null;
+
+	private Batch batch;
+	private long recordCount = 0;
+	// found simplices whose records weren't written yet, i.e. which are
+	// still alive
+	private long unwrittenCount = 0;
+	private boolean closed = false;
+
+	public SimplexStoreWriter(File file, int dim) {
+		this(file, dim, 1 << 16, 4);
+	}
+
+	public SimplexStoreWriter(File file, int dim, int batchSize, int maxPendingBatches) {
+		if (batchSize < 1 || maxPendingBatches < 1) {
+			throw new RuntimeException("batch size and pending batches must be positive");
+		}
+		this.dim = dim;
+		this.batchSize = batchSize;
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.setLength(0);
+			channel = raf.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(SimplexStoreFormat.FILE_HEADER_BYTES);
+			header.putInt(SimplexStoreFormat.MAGIC).putInt(SimplexStoreFormat.VERSION).putInt(dim).putLong(-1L);
+			header.flip();
+			writeFully(header);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		batch = new Batch(batchSize, dim);
+		queue = new ArrayBlockingQueue<Batch>(maxPendingBatches);
+		writerThread = new Thread("simplex store writer") {
+			@Override
+			public void run() {
+				writeBatches();
+			}
+		};
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	@Override
+	public void simplexFound(AbstractSimplex simplex) {
+		// the record is written once the lifetime is final
+		unwrittenCount++;
+	}
+
+	@Override
+	public void simplexKilled(AbstractSimplex simplex) {
+		add(simplex);
+	}
+
+	// writes the records of the simplices still alive in the enumeration of
+	// points, then closes the writer. each alive simplex is in the star of
+	// its minimum point.
+	public void close(ArrayList<Point> points) {
+		if (closed) {
+			return;
+		}
+		ArrayList<AbstractSimplex> aliveSimplices = new ArrayList<AbstractSimplex>();
+		for (Point p : points) {
+			aliveSimplices.clear();
+			p.star.collectAliveSimplices(aliveSimplices);
+			for (AbstractSimplex simplex : aliveSimplices) {
+				add(simplex);
+			}
+		}
+		close();
+	}
+
+	// waits for the writer thread and closes the file. fails while found
+	// simplices are still alive, as their records would be missing. this is
+	// the case unless the enumeration kills all its simplices, as in
+	// bounded-window mode (see AllSimplicesFinder.findAllSimplicesInWindows),
+	// use close(points) then.
+	public void close() {
+		if (closed) {
+			return;
+		}
+		if (unwrittenCount > 0) {
+			throw new RuntimeException(unwrittenCount + " found simplices are still alive, close(points) writes them");
+		}
+		closed = true;
+		if (batch.size > 0) {
+			enqueue(batch);
+		}
+		batch = null;
+		enqueue(END);
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		checkFailure();
+		try {
+			ByteBuffer recordCountBuffer = ByteBuffer.allocate(8);
+			recordCountBuffer.putLong(recordCount).flip();
+			channel.write(recordCountBuffer, SimplexStoreFormat.RECORD_COUNT_OFFSET);
+			channel.force(true);
+			channel.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public long recordCount() {
+		return recordCount;
+	}
+
+	private void add(AbstractSimplex simplex) {
+		if (closed) {
+			throw new RuntimeException("writer is closed");
+		}
+		int idx = batch.size;
+		int offset = idx * (dim + 1);
+		byte flags = 0;
+		if (simplex instanceof Facet) {
+			Point[] points = simplex.faces[0].points();
+			boolean oddPermutation = sortIndices(points, null, batch.vertices, offset);
+			flags = SimplexStoreFormat.FLAG_FACET;
+			if (!(simplex.faces[0].isReverse ^ oddPermutation)) {
+				flags |= SimplexStoreFormat.FLAG_FACES_POSITIVE;
+			}
+		} else {
+			Point pTop = ((Simplex) simplex).pointOpposite(simplex.faces[0]);
+			sortIndices(simplex.faces[0].points(), pTop, batch.vertices, offset);
+		}
+		batch.flags[idx] = flags;
+		batch.lastPreviousKillerIndices[idx] = simplex.lastPreviousKillerIndex;
+		batch.firstSubsequentKillerIndices[idx] = simplex.firstSubsequentKillerIndex;
+		batch.size++;
+		recordCount++;
+		unwrittenCount--;
+		if (batch.size == batchSize) {
+			enqueue(batch);
+			batch = new Batch(batchSize, dim);
+		}
+	}
+
+	// writes the indices of points (and pExtra, if not null) to vals in
+	// ascending order, returns whether sorting points was an odd permutation
+	private static boolean sortIndices(Point[] points, Point pExtra, int[] vals, int offset) {
+		int count = 0;
+		boolean oddPermutation = false;
+		for (int i = 0; i <= points.length; i++) {
+			if (i == points.length && pExtra == null) {
+				break;
+			}
+			int val = i < points.length ? points[i].i : pExtra.i;
+			// insertion sort, counting swaps
+			int pos = offset + count;
+			while (pos > offset && vals[pos - 1] > val) {
+				vals[pos] = vals[pos - 1];
+				pos--;
+				oddPermutation = !oddPermutation;
+			}
+			vals[pos] = val;
+			count++;
+		}
+		return oddPermutation;
+	}
+
+	private void enqueue(Batch full) {
+		checkFailure();
+		try {
+			// blocks while the writer thread is behind
+			queue.put(full);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			throw new RuntimeException("writing simplex store failed", failure);
+		}
+	}
+
+	// writer thread: encodes and writes batches until END
+	private void writeBatches() {
+		ByteBuffer buffer = ByteBuffer.allocate(0);
+		try {
+			while (true) {
+				Batch full = queue.take();
+				if (full == END) {
+					return;
+				}
+				int maxBytes = SimplexStoreFormat.BLOCK_HEADER_BYTES
+						+ full.size * (SimplexStoreFormat.FIXED_RECORD_BYTES + 5 * Math.max(dim - 1, 0));
+				if (buffer.capacity() < maxBytes) {
+					buffer = ByteBuffer.allocate(maxBytes);
+				}
+				buffer.clear();
+				encode(full, buffer);
+				buffer.flip();
+				writeFully(buffer);
+			}
+		} catch (Throwable e) {
+			failure = e;
+			// keep draining so the enumeration doesn't block forever
+			while (true) {
+				try {
+					if (queue.take() == END) {
+						return;
+					}
+				} catch (InterruptedException e1) {
+					return;
+				}
+			}
+		}
+	}
+
+	private void encode(Batch full, ByteBuffer buffer) {
+		int size = full.size;
+		int stride = dim + 1;
+		int maxOfMin = Integer.MIN_VALUE;
+		int minOfMax = Integer.MAX_VALUE;
+		for (int idx = 0; idx < size; idx++) {
+			int vertexCount = SimplexStoreFormat.vertexCount(full.flags[idx], dim);
+			maxOfMin = Math.max(maxOfMin, full.vertices[idx * stride]);
+			minOfMax = Math.min(minOfMax, full.vertices[idx * stride + vertexCount - 1]);
+		}
+		buffer.putInt(size);
+		int bodyLengthPos = buffer.position();
+		buffer.putInt(0); // body length, set below
+		buffer.putInt(maxOfMin);
+		buffer.putInt(minOfMax);
+		int bodyStart = buffer.position();
+		buffer.put(full.flags, 0, size);
+		for (int idx = 0; idx < size; idx++) {
+			buffer.putInt(full.lastPreviousKillerIndices[idx]);
+		}
+		for (int idx = 0; idx < size; idx++) {
+			buffer.putInt(full.vertices[idx * stride]);
+		}
+		for (int idx = 0; idx < size; idx++) {
+			int vertexCount = SimplexStoreFormat.vertexCount(full.flags[idx], dim);
+			buffer.putInt(full.vertices[idx * stride + vertexCount - 1]);
+		}
+		for (int idx = 0; idx < size; idx++) {
+			buffer.putInt(full.firstSubsequentKillerIndices[idx]);
+		}
+		for (int idx = 0; idx < size; idx++) {
+			int vertexCount = SimplexStoreFormat.vertexCount(full.flags[idx], dim);
+			for (int vIdx = 1; vIdx < vertexCount - 1; vIdx++) {
+				putVarint(buffer, full.vertices[idx * stride + vIdx] - full.vertices[idx * stride + vIdx - 1]);
+			}
+		}
+		buffer.putInt(bodyLengthPos, buffer.position() - bodyStart);
+	}
+
+	// unsigned LEB128
+	private static void putVarint(ByteBuffer buffer, int val) {
+		while ((val & ~0x7F) != 0) {
+			buffer.put((byte) ((val & 0x7F) | 0x80));
+			val >>>= 7;
+		}
+		buffer.put((byte) val);
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+}
@@ -0,0 +1,58 @@
+package delaunayKD.triangulator;
+
+import java.util.Arrays;
+import java.util.List;
+
+// growable array-backed stack. unlike java.util.Stack it isn't synchronized,
+// and it keeps its capacity when cleared, so a stack reused across insertions
+// stops allocating once it has grown to the largest exploration. null
+// elements are allowed.
+public class ArrayStack<T> {
+	private Object[] vals;
+	private int size = 0;
+
+	public ArrayStack() {
+		this(16);
+	}
+
+	public ArrayStack(int capacity) {
+		vals = new Object[Math.max(capacity, 1)];
+	}
+
+	public void push(T val) {
+		if (size == vals.length) {
+			vals = Arrays.copyOf(vals, 2 * size);
+		}
+		vals[size++] = val;
+	}
+
+	public void pushAll(List<? extends T> list) {
+		int listSize = list.size();
+		if (size + listSize > vals.length) {
+			vals = Arrays.copyOf(vals, Math.max(2 * vals.length, size + listSize));
+		}
+		for (int idx = 0; idx < listSize; idx++) {
+			vals[size++] = list.get(idx);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public T pop() {
+		T val = (T) vals[--size];
+		vals[size] = null;
+		return val;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(vals, 0, size, null);
+		size = 0;
+	}
+}
@@ -1,17 +1,13 @@
 package delaunayKD.triangulator;
 
 import java.util.ArrayList;
-import java.util.Stack;
 
-import delaunayKD.AllSimplicesFinder;
 import delaunayKD.geometry.AbstractSimplex;
 import delaunayKD.geometry.Facet;
 import delaunayKD.geometry.Point;
 import delaunayKD.geometry.Face;
 import delaunayKD.geometry.Simplex;
 
-import static delaunayKD.AllSimplicesFinder.DIM;
-
 // terminology used in this class:
 // boundary faces are that side of boundary faces which does not face the middle point
 // front hull are those outside faces which are not boundary faces
@@ -21,38 +17,66 @@ public class HoleTriangulator extends Triangulator {
 	// this triangulation maintains the hole left after removing pMid
 	public Point pMid;
 
+	// search epoch of the current update phase, see Enumerator
+	private long markEpoch;
+
 	public HoleTriangulator(Point pMid) {
 		this.pMid = pMid;
 		pMid.ht = this;
 	}
 
+	// returns the new simplices. the list is scratch space of the calling
+	// thread, reused by its next update.
 	public ArrayList<AbstractSimplex> update(Point pNew, ArrayList<Face> oldBoundaryFaces,
 			ArrayList<Face> newBoundaryFaces) {
+		// borrow the thread's scratch space for the insertion
+		UpdateScratch scr = UpdateScratch.get();
+		attachingFaces = scr.attachingFaces;
+		destroyedSimplices = scr.destroyedSimplices;
+		simplicesToExplore = scr.simplicesToExplore;
+		newSimplices = scr.newSimplices;
+		ridgeTable = scr.ridgeTable;
+		newSimplices.clear();
 		// determine destroyed simplices, and faces to attach to
-		destroySimplicesAndFindAttachingFaces(pNew, oldBoundaryFaces, newBoundaryFaces);
+		destroySimplicesAndFindAttachingFaces(pNew, oldBoundaryFaces, newBoundaryFaces, scr.facesToExplore);
 		// create all boundary faces with preliminary hull links
 		createAndLinkNewBoundary(pNew, oldBoundaryFaces, newBoundaryFaces);
 		// create new simplices and set remaining hull links
-		return createNewSimplices(pNew, newBoundaryFaces);
+		createNewSimplices(pNew, newBoundaryFaces);
+		size += newSimplices.size();
+		if (pMid.enumerator.metrics != null) {
+			pMid.enumerator.metrics.holeTriangulationUpdate(size);
+		}
+		reclaim(destroyedSimplices, newSimplices);
+		destroyedSimplices.clear();
+		attachingFaces = null;
+		destroyedSimplices = null;
+		simplicesToExplore = null;
+		newSimplices = null;
+		ridgeTable = null;
+		return scr.newSimplices;
 	}
 
 	// destroys all simplices that have pNew in their circumsphere and
 	// determines with which faces new simplices are to be created
 	private void destroySimplicesAndFindAttachingFaces(Point pNew, ArrayList<Face> oldBoundaryFaces,
-			ArrayList<Face> newBoundaryFaces) {
+			ArrayList<Face> newBoundaryFaces, ArrayList<Face> facesToExplore) {
+		markEpoch = pMid.enumerator.nextMarkEpoch();
 		// gather faces to explore current hole triangulation from...
-		ArrayList<Face> facesToExplore = new ArrayList<Face>();
+		facesToExplore.clear();
 		// old boundary faces from the face facing pNew
-		for (Face faceStarOld : oldBoundaryFaces) {
+		for (int idx = 0; idx < oldBoundaryFaces.size(); idx++) {
+			Face faceStarOld = oldBoundaryFaces.get(idx);
 			facesToExplore.add(faceStarOld.facesPoint(pNew) ? faceStarOld.faceBoundary : faceStarOld.faceBoundary.r);
 		}
 		// visible covering faces on the front hull
 		// (those on the back hull are already considered as old star faces)
-		for (Face faceStarNew : newBoundaryFaces) {
+		for (int idx = 0; idx < newBoundaryFaces.size(); idx++) {
+			Face faceStarNew = newBoundaryFaces.get(idx);
 			Face faceBoundaryNeighbor = faceStarNew.hNeighborOpposite(pNew).faceBoundary;
 			if (faceBoundaryNeighbor != null) {
-				Face faceCovering = faceBoundaryNeighbor.hNeighbors[faceBoundaryNeighbor.pointOppositeIndex(faceStarNew,
-						pNew)];
+				Face faceCovering = faceBoundaryNeighbor.hNeighbor(faceBoundaryNeighbor.pointOppositeIndex(faceStarNew,
+						pNew));
 				if (faceCovering.simplex != null && faceCovering.facesPoint(pNew)) {
 					facesToExplore.add(faceCovering);
 				}
@@ -60,10 +84,11 @@ public class HoleTriangulator extends Triangulator {
 		}
 		// excavate from multiple faces because cavity may not be fully
 		// connected
-		for (Face face : facesToExplore) {
+		for (int idx = 0; idx < facesToExplore.size(); idx++) {
+			Face face = facesToExplore.get(idx);
 			excavate(pNew, face);
 		}
-		Face.unmarkAll();
+		recordCavity(pNew);
 		findAttachingFaces(pNew);
 	}
 
@@ -73,22 +98,23 @@ public class HoleTriangulator extends Triangulator {
 	// boundary faces: link opposite pNew if linked face already exists
 	private void createAndLinkNewBoundary(Point pNew, ArrayList<Face> oldBoundaryFaces,
 			ArrayList<Face> newBoundaryFaces) {
-		for (Face faceStar : newBoundaryFaces) {
+		for (int idx = 0; idx < newBoundaryFaces.size(); idx++) {
+			Face faceStar = newBoundaryFaces.get(idx);
 			// copy new boundary faces from star
 			Face faceHole = faceStar.clone();
 			faceStar.faceBoundary = faceHole;
 			faceHole.faceBoundary = faceStar;
-			if (AllSimplicesFinder.doAlphaBookkeeping) {
+			if (pMid.enumerator.recordKnownFaces()) {
 				knownFaces.add(faceHole);
 			}
 
 			// for the ridges incident to pNew, if the adjacent boundary face
 			// already exists (if it will at all), link to it (back hull)
 			Point[] faceHolePoints = faceHole.points();
-			for (int faceIdx = 0; faceIdx < DIM; faceIdx++) {
+			for (int faceIdx = 0; faceIdx < faceHolePoints.length; faceIdx++) {
 				Point pOpposite = faceHolePoints[faceIdx];
-				if (pOpposite != pNew && faceHole.hNeighbors[faceIdx] == null) {
-					Face faceBoundaryNeighbor = faceStar.hNeighbors[faceIdx].faceBoundary;
+				if (pOpposite != pNew && faceHole.hNeighbor(faceIdx) == null) {
+					Face faceBoundaryNeighbor = faceStar.hNeighbor(faceIdx).faceBoundary;
 					if (faceBoundaryNeighbor != null) { // boundary continues?
 						faceHole.hLinkTo(faceBoundaryNeighbor, faceIdx);
 					}
@@ -99,8 +125,8 @@ public class HoleTriangulator extends Triangulator {
 			// compute the hull link of faceHole.r if it stays exposed
 			Face faceBoundaryNeighborOpposite = faceStar.hNeighborOpposite(pNew).faceBoundary;
 			if (faceBoundaryNeighborOpposite != null) {
-				Face faceBoundaryNeighborNeighbor = faceBoundaryNeighborOpposite.hNeighbors[faceBoundaryNeighborOpposite
-						.pointOppositeIndex(faceStar, pNew)];
+				Face faceBoundaryNeighborNeighbor = faceBoundaryNeighborOpposite.hNeighbor(faceBoundaryNeighborOpposite
+						.pointOppositeIndex(faceStar, pNew));
 				if (faceBoundaryNeighborNeighbor.simplex instanceof Facet) {
 					if (faceBoundaryNeighborNeighbor.simplex.isAlive()) {
 						// new boundary faces continue where old boundary ended
@@ -114,8 +140,8 @@ public class HoleTriangulator extends Triangulator {
 					Face facePotentialFrontHull = rotateThroughDeadSimplices(faceBoundaryNeighborNeighbor,
 							faceBoundaryNeighborNeighbor.pointOpposite(faceHole, pNew)).r;
 					if (facePotentialFrontHull.simplex instanceof Facet && facePotentialFrontHull.simplex.isDead()) {
-						Face facePotentialFrontHullNeighbor = facePotentialFrontHull.hNeighbors[facePotentialFrontHull
-								.pointOppositeIndex(faceHole, pNew)];
+						Face facePotentialFrontHullNeighbor = facePotentialFrontHull.hNeighbor(facePotentialFrontHull
+								.pointOppositeIndex(faceHole, pNew));
 						if (facePotentialFrontHullNeighbor.simplex.isAlive()) {
 							faceHole.r.hLinkTo(facePotentialFrontHullNeighbor, pNew);
 						}
@@ -127,9 +153,10 @@ public class HoleTriangulator extends Triangulator {
 		}
 
 		// set hull links on ridges opposite pNew where star ends
-		for (Face faceStarOld : oldBoundaryFaces) {
-			for (int faceIdx = 0; faceIdx < DIM; faceIdx++) {
-				Face faceNeighborStar = faceStarOld.hNeighbors[faceIdx];
+		for (int idx = 0; idx < oldBoundaryFaces.size(); idx++) {
+			Face faceStarOld = oldBoundaryFaces.get(idx);
+			for (int faceIdx = 0; faceIdx < pMid.enumerator.dim; faceIdx++) {
+				Face faceNeighborStar = faceStarOld.hNeighbor(faceIdx);
 				// did the star end here, and does it end here still?
 				if (faceNeighborStar.hasVertex(pMid) && faceNeighborStar.r.simplex != faceStarOld.r.simplex) {
 					// (if it continued now, faceNeighborStar.r.simplex wouldn't
@@ -137,8 +164,8 @@ public class HoleTriangulator extends Triangulator {
 					Face faceHoleReplacing = faceNeighborStar.hNeighborOpposite(pMid).faceBoundary;
 					// faceHoleReplacing is the new boundary face replacing
 					// faceStarOld
-					Face faceFrontHullOld = faceStarOld.faceBoundary.hNeighbors[faceStarOld
-							.pointOppositeIndex(faceHoleReplacing, pNew)];
+					Face faceFrontHullOld = faceStarOld.faceBoundary.hNeighbor(faceStarOld
+							.pointOppositeIndex(faceHoleReplacing, pNew));
 					if (faceFrontHullOld.simplex.isDead()) {
 						// current front hull survives, link to it
 						faceHoleReplacing.hLinkTo(faceHoleReplacing.r, pNew);
@@ -151,33 +178,81 @@ public class HoleTriangulator extends Triangulator {
 		}
 
 		// special case: link over ridge opposite pNew for first face
-		if (pNew.i == pMid.i + DIM) {
+		if (pNew.i == pMid.i + pMid.enumerator.dim) {
 			Face faceBoundary = newBoundaryFaces.get(0).faceBoundary;
 			faceBoundary.hLinkTo(faceBoundary.r, pNew);
 		}
 	}
 
-	// creates all new simplices, sets the remaining hull links
-	private ArrayList<AbstractSimplex> createNewSimplices(Point pNew, ArrayList<Face> newBoundaryFaces) {
+	// creates all new simplices and adds them to newSimplices, sets the
+	// remaining hull links
+	private void createNewSimplices(Point pNew, ArrayList<Face> newBoundaryFaces) {
 		// temporarily mark all attaching faces so they're easy to recognize
-		for (Face face : attachingFaces) {
-			face.mark();
+		markEpoch = pMid.enumerator.nextMarkEpoch();
+		for (int idx = 0; idx < attachingFaces.size(); idx++) {
+			Face face = attachingFaces.get(idx);
+			face.mark(markEpoch);
+		}
+
+		// a ridge of an attaching face is shared with another attaching face,
+		// or with a new boundary face (at its ridge opposite pNew), unless it
+		// is on the front hull
+		int dim = pMid.enumerator.dim;
+		ridgeTable.reset(dim - 1, attachingFaces.size() * dim + newBoundaryFaces.size());
+		for (int idx = 0; idx < attachingFaces.size(); idx++) {
+			Face face = attachingFaces.get(idx);
+			for (int pIdx = 0; pIdx < dim; pIdx++) {
+				ridgeTable.add(face, pIdx);
+			}
+		}
+		for (int idx = 0; idx < newBoundaryFaces.size(); idx++) {
+			Face faceHole = newBoundaryFaces.get(idx).faceBoundary;
+			Point[] faceHolePoints = faceHole.points();
+			for (int pIdx = 0; pIdx < dim; pIdx++) {
+				if (faceHolePoints[pIdx] == pNew) {
+					ridgeTable.add(faceHole, pIdx);
+				}
+			}
 		}
 
 		// create all simplices, and all facets on non-boundary faces
-		ArrayList<AbstractSimplex> newSimplices = new ArrayList<AbstractSimplex>();
-		for (Face faceAttaching : attachingFaces) {
-			Face[] faces = new Face[DIM + 1];
-			faces[0] = faceAttaching;
+		for (int idx = 0; idx < attachingFaces.size(); idx++) {
+			Face faceAttaching = attachingFaces.get(idx);
 			Point[] facePoints = faceAttaching.points();
+			Face[] faces = new Face[facePoints.length + 1];
+			faces[0] = faceAttaching;
 
 			// find or create the DIM new faces of the new simplex
-			for (int pIdx = 0; pIdx < DIM; pIdx++) {
+			for (int pIdx = 0; pIdx < facePoints.length; pIdx++) {
 				Point pOpposite = facePoints[pIdx];
+				if (ridgeTable.match(faceAttaching, pIdx)) {
+					Face faceMatch = ridgeTable.matchFace;
+					if (faceMatch.points()[ridgeTable.matchPIdx] == pNew) {
+						// new boundary begins here, use the new boundary face
+						faces[pIdx + 1] = faceMatch.r;
+					} else {
+						Simplex simplexNeighbor = faceMatch.simplex();
+						if (simplexNeighbor != null && simplexNeighbor.maxPoint() == pNew) {
+							// neighboring simplex was created already, so the
+							// shared face already exists
+							faces[pIdx + 1] = simplexNeighbor.faces[1 + ridgeTable.matchPIdx].r;
+						} else {
+							// neighboring simplex was not created yet
+							// create the shared face now
+							faces[pIdx + 1] = faceAttaching.createFaceFacing(pNew, pIdx);
+							if (pMid.enumerator.recordKnownFaces()) {
+								knownFaces.add(faces[pIdx + 1]);
+							}
+						}
+					}
+					continue;
+				}
+
 				Face faceCurr = faceAttaching.r;
-				// rotate around the ridge of faceAttaching, towards pNew, to
-				// find the neighboring attaching face, or determine that no
-				// such face exists.
+				// no match, so the ridge is on the front hull. rotate around
+				// the ridge of faceAttaching, towards pNew, to find the hull
+				// face behind it (or the neighboring attaching face, or new
+				// boundary face, should the ridge be shared by more faces).
 				// loop can take up to three iterations to terminate because
 				// each iteration can only do one hull traversal step. there are
 				// at most two hulls traversals necessary (front and back hull),
@@ -187,7 +262,7 @@ public class HoleTriangulator extends Triangulator {
 					faceCurr = rotateThroughDeadSimplices(faceCurr, faceCurr.pointOpposite(faceAttaching, pOpposite));
 
 					// did we find the neighboring attaching face?
-					if (faceCurr.isMarked()) {
+					if (faceCurr.isMarked(markEpoch)) {
 						Simplex simplexNeighbor = faceCurr.simplex();
 						if (simplexNeighbor != null && simplexNeighbor.maxPoint() == pNew) {
 							// neighboring simplex was created already, so the
@@ -198,7 +273,7 @@ public class HoleTriangulator extends Triangulator {
 							// neighboring simplex was not created yet
 							// create the shared face now
 							faces[pIdx + 1] = faceAttaching.createFaceFacing(pNew, pIdx);
-							if (AllSimplicesFinder.doAlphaBookkeeping) {
+							if (pMid.enumerator.recordKnownFaces()) {
 								knownFaces.add(faces[pIdx + 1]);
 							}
 						}
@@ -206,10 +281,10 @@ public class HoleTriangulator extends Triangulator {
 					}
 
 					// we've hit a hull, step over ridge on hull
-					Face faceHullNeighbor = faceCurr.r.hNeighbors[faceCurr.pointOppositeIndex(faceAttaching,
-							pOpposite)];
-					Face faceHullNeighborHullNeighbor = faceHullNeighbor.hNeighbors[faceHullNeighbor
-							.pointOppositeIndex(faceAttaching, pOpposite)];
+					Face faceHullNeighbor = faceCurr.r.hNeighbor(faceCurr.pointOppositeIndex(faceAttaching,
+							pOpposite));
+					Face faceHullNeighborHullNeighbor = faceHullNeighbor.hNeighbor(faceHullNeighbor
+							.pointOppositeIndex(faceAttaching, pOpposite));
 					if (faceHullNeighborHullNeighbor != faceCurr.r) {
 						// new boundary begins here, use the new boundary face
 						// (i.e. faceHullNeighborHullNeighbor.r)
@@ -222,7 +297,7 @@ public class HoleTriangulator extends Triangulator {
 						// create face shared with new facet on the new front
 						// hull
 						Face faceNew = faceAttaching.createFaceFacing(pNew, pIdx);
-						if (AllSimplicesFinder.doAlphaBookkeeping) {
+						if (pMid.enumerator.recordKnownFaces()) {
 							knownFaces.add(faceNew);
 						}
 						faces[pIdx + 1] = faceNew;
@@ -236,10 +311,10 @@ public class HoleTriangulator extends Triangulator {
 			newSimplices.add(new Simplex(faces, getLastPreviousKillerIndex()));
 		}
 		attachingFaces.clear();
-		Face.unmarkAll();
 
 		// create all facets on the backside of boundary faces
-		for (Face face : newBoundaryFaces) {
+		for (int idx = 0; idx < newBoundaryFaces.size(); idx++) {
+			Face face = newBoundaryFaces.get(idx);
 			if (face.faceBoundary.r.simplex == null) {
 				// no simplex created here, so this must be on the front hull
 				newSimplices.add(new Facet(face.faceBoundary.r, getLastPreviousKillerIndex()));
@@ -247,15 +322,16 @@ public class HoleTriangulator extends Triangulator {
 		}
 
 		// add missing front hull links by rotating through new simplices
-		for (AbstractSimplex simplex : newSimplices) {
+		for (int idx = 0; idx < newSimplices.size(); idx++) {
+			AbstractSimplex simplex = newSimplices.get(idx);
 			if (simplex instanceof Facet) {
 				Face face = simplex.faces[0];
 				Point[] facePoints = face.points();
-				for (int faceIdx = 0; faceIdx < DIM; faceIdx++) {
+				for (int faceIdx = 0; faceIdx < facePoints.length; faceIdx++) {
 					Point pOpposite = facePoints[faceIdx];
 					if (pOpposite != pNew) {
 						// all links opposite pNew are already set at this point
-						if (face.hNeighbors[faceIdx] == null) {
+						if (face.hNeighbor(faceIdx) == null) {
 							Face faceCurr = face.r;
 							while (!(faceCurr.simplex instanceof Facet)) { // rotate
 								Simplex simplexNext = faceCurr.simplex();
@@ -263,8 +339,8 @@ public class HoleTriangulator extends Triangulator {
 									faceCurr = simplexNext.faceOpposite(faceCurr.pointOpposite(face, pOpposite)).r;
 								} else {
 									// hit the back hull. does it continue?
-									Face faceBoundaryNeighbor = faceCurr.hNeighbors[faceCurr.pointOppositeIndex(face,
-											pOpposite)];
+									Face faceBoundaryNeighbor = faceCurr.hNeighbor(faceCurr.pointOppositeIndex(face,
+											pOpposite));
 									if (faceBoundaryNeighbor != null) {
 										faceCurr = faceBoundaryNeighbor.r;
 									} else {
@@ -279,15 +355,14 @@ public class HoleTriangulator extends Triangulator {
 				}
 			}
 		}
-
-		return newSimplices;
 	}
 
 	@Override
 	protected void findAttachingFaces(Point pNew) {
 		// attach to cavity faces if resulting circumsphere contains pMid
 		// note that some attaching faces were already found in excavate()
-		for (AbstractSimplex simplex : destroyedSimplices) {
+		for (int idx = 0; idx < destroyedSimplices.size(); idx++) {
+			AbstractSimplex simplex = destroyedSimplices.get(idx);
 			for (Face face : simplex.faces) {
 				if ((face.r.simplex == null || face.r.simplex.isAlive())
 						&& face.simplexContainsPointInCircumsphere(pNew, pMid)) {
@@ -295,20 +370,19 @@ public class HoleTriangulator extends Triangulator {
 				}
 			}
 		}
-		destroyedSimplices.clear();
 	}
 
 	@Override
 	protected void excavate(Point pNew, Face faceInit) {
 		if (faceInit.simplex instanceof Simplex) {
-			simplicesToExplore.add(faceInit.simplex);
+			simplicesToExplore.push(faceInit.simplex);
 		} else { // hull face
 			// manually explore hull because back hull doesn't have simplices
-			Stack<Face> facesToExplore = new Stack<Face>();
-			facesToExplore.add(faceInit);
+			ArrayStack<Face> facesToExplore = UpdateScratch.get().hullFacesToExplore;
+			facesToExplore.push(faceInit);
 			while (!facesToExplore.isEmpty()) {
 				Face face = facesToExplore.pop();
-				if (!face.isMarked()
+				if (!face.isMarked(markEpoch)
 						// ^^^ not yet explored
 						&& ((face.simplex != null && face.simplex.isAlive())
 								// ^^^ front hull visible to pNew
@@ -316,14 +390,14 @@ public class HoleTriangulator extends Triangulator {
 						// ^^^ old boundary face
 						&& face.facesPoint(pNew)) {
 					// ^^^ visible from pNew
-					face.mark(); // "whatever simplex would be here in the full
+					face.mark(markEpoch); // "whatever simplex would be here in the full
 									// triangulation is dead"
 					if (face.simplex != null) { // destroy face
 						destroy(face.simplex, pNew);
 					}
 					if (face.r.simplex != null) { // keep excavating behind face
 						if (face.r.simplex.containsPointInCircumsphere(pNew)) {
-							simplicesToExplore.add(face.r.simplex);
+							simplicesToExplore.push(face.r.simplex);
 						} else if (face.simplex == null) {
 							// attach to old boundary face from outside the old
 							// boundary because the cavity already ends here
@@ -332,7 +406,7 @@ public class HoleTriangulator extends Triangulator {
 					}
 					// keep exploring hull
 					for (Face faceNeighbor : face.hNeighbors) {
-						facesToExplore.add(faceNeighbor);
+						facesToExplore.push(faceNeighbor);
 					}
 				}
 			}
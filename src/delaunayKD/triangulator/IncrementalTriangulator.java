@@ -2,87 +2,130 @@ package delaunayKD.triangulator;
 
 import java.util.ArrayList;
 
-import delaunayKD.AllSimplicesFinder;
+import delaunayKD.Enumerator;
 import delaunayKD.geometry.AbstractSimplex;
 import delaunayKD.geometry.Facet;
 import delaunayKD.geometry.Point;
 import delaunayKD.geometry.Face;
 import delaunayKD.geometry.Simplex;
 
-import static delaunayKD.AllSimplicesFinder.DIM;
-
 public class IncrementalTriangulator extends Triangulator {
 
+	// context of the enumeration this triangulation belongs to
+	public final Enumerator enumerator;
+
 	// collect first DIM points (as they appear one by one)
-	private Point[] firstFacePoints = new Point[DIM];
+	public Point[] firstFacePoints;
+
+	// triangulator using the static defaults in AllSimplicesFinder
+	public IncrementalTriangulator() {
+		this(Enumerator.fromDefaults());
+	}
+
+	public IncrementalTriangulator(Enumerator enumerator) {
+		this.enumerator = enumerator;
+		firstFacePoints = new Point[enumerator.dim];
+		attachingFaces = new ArrayList<Face>();
+		destroyedSimplices = new ArrayList<AbstractSimplex>();
+		simplicesToExplore = new ArrayStack<AbstractSimplex>();
+		newSimplices = new ArrayList<AbstractSimplex>();
+		ridgeTable = new RidgeTable();
+	}
 
 	// insert a point given its location (in the form of a simplex or facet
 	// destroyed by it)
 	// no location is necessary for the first DIM points
+	// returns the new simplices. the list is reused by the next insertion.
 	public ArrayList<AbstractSimplex> addPoint(Point pNew, AbstractSimplex location) {
+		newSimplices.clear();
 		if (location != null) {
 			// destroy simplices that have pNew in their circumsphere
 			excavate(pNew, location.faces[0]);
+			recordCavity(pNew);
 			// determine with which faces pNew creates new simplices
 			findAttachingFaces(pNew);
-			return createNewSimplices(pNew);
+			createNewSimplices(pNew);
+			size += newSimplices.size();
+			reclaim(destroyedSimplices, newSimplices);
+			destroyedSimplices.clear();
+			return newSimplices;
 		} else {
 			// remember first DIM points to create first face with
-			for (int i = 0; i < DIM; i++) {
+			for (int i = 0; i < enumerator.dim; i++) {
 				if (firstFacePoints[i] == null) {
 					firstFacePoints[i] = pNew;
-					if (i == DIM - 1) {
+					if (i == enumerator.dim - 1) {
 						// initialize with first face and 2 facets
 						Face faceNew = new Face(firstFacePoints);
-						if (AllSimplicesFinder.doAlphaBookkeeping) {
+						if (enumerator.recordKnownFaces()) {
 							knownFaces.add(faceNew);
 						}
-						ArrayList<AbstractSimplex> newSimplices = new ArrayList<AbstractSimplex>(2);
 						newSimplices.add(new Facet(faceNew, getLastPreviousKillerIndex()));
 						newSimplices.add(new Facet(faceNew.r, getLastPreviousKillerIndex()));
-						for (int faceIdx = 0; faceIdx < DIM; faceIdx++) {
-							faceNew.hNeighbors[faceIdx] = faceNew.r;
-							faceNew.r.hNeighbors[faceIdx] = faceNew;
+						for (int faceIdx = 0; faceIdx < enumerator.dim; faceIdx++) {
+							faceNew.setHNeighbor(faceIdx, faceNew.r);
+							faceNew.r.setHNeighbor(faceIdx, faceNew);
 						}
+						size += newSimplices.size();
 						return newSimplices;
 					}
 					break;
 				}
 			}
-			return new ArrayList<AbstractSimplex>(0);
+			return newSimplices;
 		}
 	}
 
-	// create new simplices with all attachingFaces
-	private ArrayList<AbstractSimplex> createNewSimplices(Point pNew) {
-		ArrayList<AbstractSimplex> newSimplices = new ArrayList<AbstractSimplex>();
-		for (Face faceBase : attachingFaces) {
+	// create new simplices with all attachingFaces, adds them to newSimplices
+	private void createNewSimplices(Point pNew) {
+		// a ridge of an attaching face is shared with exactly one other
+		// attaching face, unless it is on the horizon of the convex hull
+		ridgeTable.reset(enumerator.dim - 1, attachingFaces.size() * enumerator.dim);
+		for (int idx = 0; idx < attachingFaces.size(); idx++) {
+			Face faceBase = attachingFaces.get(idx);
+			for (int pIdx = 0; pIdx < enumerator.dim; pIdx++) {
+				ridgeTable.add(faceBase, pIdx);
+			}
+		}
+
+		for (int idx = 0; idx < attachingFaces.size(); idx++) {
+			Face faceBase = attachingFaces.get(idx);
 			// find or create the DIM new faces of the new simplex
-			Face[] faces = new Face[DIM + 1];
+			Face[] faces = new Face[enumerator.dim + 1];
 			faces[0] = faceBase;
 			Point[] faceBasePoints = faceBase.points();
-			for (int pIdx = 0; pIdx < DIM; pIdx++) {
+			for (int pIdx = 0; pIdx < enumerator.dim; pIdx++) {
 				Point pOpposite = faceBasePoints[pIdx];
-				Face faceNeighboringBase = findNeighboringAttachingFace(faceBase, pOpposite);
+				Face faceNeighboringBase;
+				int pNeighboringOppositeIdx = -1;
+				if (ridgeTable.match(faceBase, pIdx)) {
+					faceNeighboringBase = ridgeTable.matchFace;
+					pNeighboringOppositeIdx = ridgeTable.matchPIdx;
+				} else {
+					// ridge on the horizon, rotate to make sure
+					faceNeighboringBase = findNeighboringAttachingFace(faceBase, pOpposite);
+					if (faceNeighboringBase != null) {
+						pNeighboringOppositeIdx = faceNeighboringBase.pointOppositeIndex(faceBase, pOpposite);
+					}
+				}
 				if (faceNeighboringBase != null) {
 					// face is shared with neighboring new simplex
 					if (faceNeighboringBase.simplex.maxPoint() == pNew) {
 						// neighboring new simplex was already created, so the
 						// shared face already exists
-						faces[pIdx + 1] = faceNeighboringBase.simplex().faces[1
-								+ faceNeighboringBase.pointOppositeIndex(faceBase, pOpposite)].r;
+						faces[pIdx + 1] = faceNeighboringBase.simplex().faces[1 + pNeighboringOppositeIdx].r;
 					} else {
 						// neighboring new simplex is yet to be created, so we
 						// create the shared face now
 						faces[pIdx + 1] = faceBase.createFaceFacing(pNew, pIdx);
-						if (AllSimplicesFinder.doAlphaBookkeeping) {
+						if (enumerator.recordKnownFaces()) {
 							knownFaces.add(faces[pIdx + 1]);
 						}
 					}
 				} else {
 					// face is shared with new facet, which we create now
 					Face faceNew = faceBase.createFaceFacing(pNew, pIdx);
-					if (AllSimplicesFinder.doAlphaBookkeeping) {
+					if (enumerator.recordKnownFaces()) {
 						knownFaces.add(faceNew);
 					}
 					faces[pIdx + 1] = faceNew;
@@ -90,7 +133,7 @@ public class IncrementalTriangulator extends Triangulator {
 					// find and set hull link
 					Face faceReplacedHull = rotateThroughDeadSimplices(faceBase.r, pOpposite).r;
 					faceNew.r.hLinkTo(
-							faceReplacedHull.hNeighbors[faceReplacedHull.pointOppositeIndex(faceBase, pOpposite)],
+							faceReplacedHull.hNeighbor(faceReplacedHull.pointOppositeIndex(faceBase, pOpposite)),
 							pIdx);
 				}
 			}
@@ -99,13 +142,14 @@ public class IncrementalTriangulator extends Triangulator {
 
 		// set hull links between new outside faces by rotating through new
 		// simplices around new outside ridges to find hull neighbor
-		for (AbstractSimplex simplex : newSimplices) {
+		for (int idx = 0; idx < newSimplices.size(); idx++) {
+			AbstractSimplex simplex = newSimplices.get(idx);
 			if (simplex instanceof Facet) {
 				Face face = simplex.faces[0];
 				Point[] facePoints = face.points();
-				for (int pIdx = 0; pIdx < DIM; pIdx++) {
+				for (int pIdx = 0; pIdx < enumerator.dim; pIdx++) {
 					// link opposite pNew already set above
-					if (face.hNeighbors[pIdx] == null) {
+					if (face.hNeighbor(pIdx) == null) {
 						Point pOpposite = facePoints[pIdx];
 						Face faceHullNeighbor = rotateThroughSimplices(face, pOpposite).r;
 						face.hLinkTo(faceHullNeighbor, pIdx);
@@ -115,7 +159,6 @@ public class IncrementalTriangulator extends Triangulator {
 		}
 
 		attachingFaces.clear();
-		return newSimplices;
 	}
 
 	// given an attaching face, find the other attaching face using the ridge
@@ -129,7 +172,7 @@ public class IncrementalTriangulator extends Triangulator {
 		} else {
 			// new point is outside convex hull. rotation hit the hull.
 			// on the hull, step across the ridge being rotated around.
-			Face faceHullNeighbor = faceRotate.r.hNeighbors[faceRotate.pointOppositeIndex(face, pOpposite)];
+			Face faceHullNeighbor = faceRotate.r.hNeighbor(faceRotate.pointOppositeIndex(face, pOpposite));
 			if (faceHullNeighbor.simplex instanceof Simplex) {
 				// attaching to the neighboring hull face. the new simplex there
 				// was already created.
@@ -151,21 +194,21 @@ public class IncrementalTriangulator extends Triangulator {
 
 	@Override
 	protected void excavate(Point pNew, Face faceInit) {
-		simplicesToExplore.add(faceInit.simplex);
+		simplicesToExplore.push(faceInit.simplex);
 		exploreAndDestroySimplices(pNew);
 	}
 
 	@Override
 	protected void findAttachingFaces(Point pNew) {
 		// attach to cavity faces if simplex behind is alive
-		for (AbstractSimplex simplex : destroyedSimplices) {
+		for (int idx = 0; idx < destroyedSimplices.size(); idx++) {
+			AbstractSimplex simplex = destroyedSimplices.get(idx);
 			for (Face face : simplex.faces) {
 				if (face.r.simplex.isAlive()) {
 					attachingFaces.add(face);
 				}
 			}
 		}
-		destroyedSimplices.clear();
 	}
 
 }
@@ -0,0 +1,130 @@
+package delaunayKD.triangulator;
+
+import java.util.Arrays;
+
+import delaunayKD.geometry.Face;
+import delaunayKD.geometry.Point;
+
+// hash table matching the faces of a cavity which share a ridge. a ridge of a
+// face is given by the face and the index of the point opposite the ridge,
+// and keyed on the sorted indices of its DIM-1 points, so faces match in
+// expected constant time instead of by rotating around the ridge. filled
+// once per point insertion (see add()) and queried afterwards (see match()).
+// keeps its capacity when reset, so a table reused across insertions stops
+// allocating once it has grown to the largest cavity.
+class RidgeTable {
+	private int ridgeSize = 0;
+	// per slot: sorted point indices of the ridge
+	private int[] keys = new int[0];
+	// per slot: the first and second face with the ridge, and the indices of
+	// the points opposite the ridge
+	private Face[] faces = new Face[0];
+	private int[] pIdxs = new int[0];
+	// per slot: number of faces added with the ridge
+	private int[] counts = new int[0];
+	private int mask = -1;
+	// occupied slots, cleared on reset
+	private int[] usedSlots = new int[16];
+	private int usedCount = 0;
+	// key of the ridge currently looked up
+	private int[] key = new int[0];
+
+	// result of the last successful match(): the other face with the ridge
+	// and the index of its point opposite the ridge
+	Face matchFace;
+	int matchPIdx;
+
+	// empties the table for ridges with ridgeSize points, sized for the given
+	// number of add() calls
+	void reset(int ridgeSize, int expectedAdds) {
+		for (int idx = 0; idx < usedCount; idx++) {
+			int slot = usedSlots[idx];
+			counts[slot] = 0;
+			faces[2 * slot] = null;
+			faces[2 * slot + 1] = null;
+		}
+		usedCount = 0;
+		matchFace = null;
+		int capacity = Integer.highestOneBit(Math.max(2 * expectedAdds, 8) - 1) << 1;
+		if (ridgeSize != this.ridgeSize || capacity > counts.length) {
+			this.ridgeSize = ridgeSize;
+			keys = new int[capacity * ridgeSize];
+			faces = new Face[2 * capacity];
+			pIdxs = new int[2 * capacity];
+			counts = new int[capacity];
+			mask = capacity - 1;
+			key = new int[ridgeSize];
+		}
+	}
+
+	// adds the ridge of face opposite its point pIdx
+	void add(Face face, int pIdx) {
+		int slot = findSlot(face, pIdx);
+		int count = counts[slot];
+		if (count == 0) {
+			System.arraycopy(key, 0, keys, slot * ridgeSize, ridgeSize);
+			if (usedCount == usedSlots.length) {
+				usedSlots = Arrays.copyOf(usedSlots, 2 * usedCount);
+			}
+			usedSlots[usedCount++] = slot;
+		}
+		if (count < 2) {
+			faces[2 * slot + count] = face;
+			pIdxs[2 * slot + count] = pIdx;
+		}
+		counts[slot] = count + 1;
+	}
+
+	// looks up the ridge of face opposite its point pIdx (which must have been
+	// added). returns whether exactly one other face was added with this
+	// ridge, which is then given by matchFace and matchPIdx.
+	boolean match(Face face, int pIdx) {
+		int slot = findSlot(face, pIdx);
+		if (counts[slot] != 2) {
+			return false;
+		}
+		int other = faces[2 * slot] == face && pIdxs[2 * slot] == pIdx ? 2 * slot + 1 : 2 * slot;
+		matchFace = faces[other];
+		matchPIdx = pIdxs[other];
+		return true;
+	}
+
+	// computes the key of the ridge into key, returns the slot holding it or
+	// the empty slot where it goes (linear probing)
+	private int findSlot(Face face, int pIdx) {
+		Point[] points = face.points();
+		int length = 0;
+		for (int i = 0; i < points.length; i++) {
+			if (i != pIdx) {
+				// insertion sort, ridges have at most a handful of points
+				int val = points[i].i;
+				int pos = length++;
+				while (pos > 0 && key[pos - 1] > val) {
+					key[pos] = key[pos - 1];
+					pos--;
+				}
+				key[pos] = val;
+			}
+		}
+		int hash = 0;
+		for (int i = 0; i < ridgeSize; i++) {
+			hash = 31 * hash + key[i];
+		}
+		hash *= 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (counts[slot] != 0 && !keyEquals(slot)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private boolean keyEquals(int slot) {
+		int offset = slot * ridgeSize;
+		for (int i = 0; i < ridgeSize; i++) {
+			if (keys[offset + i] != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,7 +1,8 @@
 package delaunayKD.triangulator;
 
 import java.util.ArrayList;
-import java.util.Stack;
+import java.util.Collections;
+import java.util.List;
 
 import delaunayKD.geometry.AbstractSimplex;
 import delaunayKD.geometry.Facet;
@@ -9,8 +10,6 @@ import delaunayKD.geometry.Point;
 import delaunayKD.geometry.Face;
 import delaunayKD.geometry.Simplex;
 
-import static delaunayKD.AllSimplicesFinder.DIM;
-
 public class Star {
 	// point in the middle
 	public Point pMid;
@@ -19,7 +18,7 @@ public class Star {
 	private ArrayList<AbstractSimplex> registeredSimplices = new ArrayList<AbstractSimplex>();
 	private int unmatchedFaces = 0; // currently known unmatched faces
 	public Face faceLatest = null; // the newest star face
-	private Simplex simplexLatest = null; // some simplex from the last update
+	public Simplex simplexLatest = null; // some simplex from the last update
 											// (original instance)
 
 	public Star(Point pMid) {
@@ -29,29 +28,54 @@ public class Star {
 
 	// registers a new simplex of the star. if now all new simplices are
 	// known, the star and hole triangulation are updated and new
-	// simplices found in the hole triangulation are returned
-	public ArrayList<AbstractSimplex> registerSimplex(AbstractSimplex newSimplex, Point pNew) {
+	// simplices found in the hole triangulation are returned (see update())
+	public List<AbstractSimplex> registerSimplex(AbstractSimplex newSimplex, Point pNew) {
+		if (addSimplex(newSimplex, pNew)) {
+			return update(pNew);
+		} else {
+			// no update yet
+			return Collections.emptyList();
+		}
+	}
+
+	// registers a new simplex of the star without updating. returns whether
+	// all new simplices are known now, i.e. whether update() is due. only
+	// touches this star and the unique faces of newSimplex's faces incident to
+	// pMid, which belong to this star.
+	public boolean addSimplex(AbstractSimplex newSimplex, Point pNew) {
 		registeredSimplices.add(newSimplex);
 		simplexLatest = newSimplex instanceof Simplex ? (Simplex) newSimplex : simplexLatest;
-		ArrayList<AbstractSimplex> holeTriangulationSimplices;
 		// ensure new faces also exist as star faces, and track how many faces
 		// don't have 2 simplices yet (update once all have 2 simplices)
 		unmatchedFaces += ensureStarFaceExistence(pNew, newSimplex);
-		if (unmatchedFaces == 0) {
-			if (pNew.i == pMid.i + DIM - 1) {
-				initWithFirstFace();
-				holeTriangulationSimplices = new ArrayList<AbstractSimplex>(0);
-			} else {
-				ArrayList<AbstractSimplex> destroyedSimplices = findDestroyedSimplices(simplexLatest, pNew);
-				ArrayList<Face> oldBoundaryFaces = findOldBoundaryFaces(destroyedSimplices);
-				ArrayList<Face> newBoundaryFaces = updateStar(pNew, destroyedSimplices);
-				holeTriangulationSimplices = pMid.ht.update(pNew, oldBoundaryFaces, newBoundaryFaces);
-			}
-			registeredSimplices.clear();
+		return unmatchedFaces == 0;
+	}
+
+	// updates the star and hole triangulation with all registered simplices,
+	// returns new simplices found in the hole triangulation. only modifies
+	// this star and pMid's hole triangulation, so updates of different stars
+	// may run concurrently. the returned list is scratch space of the calling
+	// thread, reused by its next update.
+	public List<AbstractSimplex> update(Point pNew) {
+		List<AbstractSimplex> holeTriangulationSimplices;
+		if (pMid.enumerator.metrics != null) {
+			pMid.enumerator.metrics.starUpdate();
+		}
+		if (pNew.i == pMid.i + pMid.enumerator.dim - 1) {
+			initWithFirstFace();
+			holeTriangulationSimplices = Collections.emptyList();
 		} else {
-			// no update yet
-			holeTriangulationSimplices = new ArrayList<AbstractSimplex>(0);
+			UpdateScratch scr = UpdateScratch.get();
+			ArrayList<AbstractSimplex> destroyedSimplices = scr.destroyedStarSimplices;
+			ArrayList<Face> oldBoundaryFaces = scr.oldBoundaryFaces;
+			ArrayList<Face> newBoundaryFaces = scr.newBoundaryFaces;
+			findDestroyedSimplices(simplexLatest, pNew, destroyedSimplices, scr.starSimplicesToDestroy);
+			findOldBoundaryFaces(destroyedSimplices, oldBoundaryFaces);
+			updateStar(pNew, destroyedSimplices, newBoundaryFaces, scr.newFacets, scr.newStarSimplices);
+			holeTriangulationSimplices = pMid.ht.update(pNew, oldBoundaryFaces, newBoundaryFaces);
+			Triangulator.reclaim(destroyedSimplices, scr.newStarSimplices);
 		}
+		registeredSimplices.clear();
 		return holeTriangulationSimplices;
 	}
 
@@ -79,16 +103,21 @@ public class Star {
 		return existingFaces - newFaces;
 	}
 
-	// inserts all new simplices into the star
-	private ArrayList<Face> updateStar(Point pNew, ArrayList<AbstractSimplex> destroyedSimplices) {
-		ArrayList<Facet> newFacets = new ArrayList<Facet>();
-		ArrayList<Face> newBoundaryFaces = new ArrayList<Face>();
+	// inserts all new simplices into the star, collects the new boundary
+	// faces in newBoundaryFaces and the new proper simplices in newSimplices.
+	// newFacets is scratch space.
+	private void updateStar(Point pNew, ArrayList<AbstractSimplex> destroyedSimplices,
+			ArrayList<Face> newBoundaryFaces, ArrayList<Facet> newFacets, ArrayList<Simplex> newSimplices) {
+		newBoundaryFaces.clear();
+		newFacets.clear();
+		newSimplices.clear();
 		// clone all new simplices into star
-		for (AbstractSimplex simplex : registeredSimplices) {
+		for (int idx = 0; idx < registeredSimplices.size(); idx++) {
+			AbstractSimplex simplex = registeredSimplices.get(idx);
 			if (simplex instanceof Simplex) {
-				Face[] faces = new Face[DIM + 1];
+				Face[] faces = new Face[pMid.enumerator.dim + 1];
 				// find or create star face instances of faces
-				for (int i = 0; i < DIM + 1; i++) {
+				for (int i = 0; i < pMid.enumerator.dim + 1; i++) {
 					Face faceOrig = simplex.faces[i];
 					if (faceOrig.hasVertex(pMid)) {
 						// star face (incident to pMid)
@@ -102,6 +131,7 @@ public class Star {
 				}
 				Simplex simplexClone = new Simplex(faces, -1);
 				simplexClone.original = simplex;
+				newSimplices.add(simplexClone);
 			} else {
 				Face faceStar = simplex.faces[0].faceStar();
 				Facet facetClone = new Facet(faceStar, -1);
@@ -111,11 +141,12 @@ public class Star {
 		}
 
 		// set hull links of boundary faces
-		for (Face face : newBoundaryFaces) {
+		for (int idx = 0; idx < newBoundaryFaces.size(); idx++) {
+			Face face = newBoundaryFaces.get(idx);
 			Point[] facePoints = face.points();
-			for (int faceIdx = 0; faceIdx < DIM; faceIdx++) {
+			for (int faceIdx = 0; faceIdx < pMid.enumerator.dim; faceIdx++) {
 				Point pOpposite = facePoints[faceIdx];
-				if (face.hNeighbors[faceIdx] == null) {
+				if (face.hNeighbor(faceIdx) == null) {
 					Face faceOutsideSimplex = face.r.simplex().faceOpposite(pOpposite).r;
 					Simplex simplexNeighbor = faceOutsideSimplex.simplex();
 					if (simplexNeighbor != null) {
@@ -131,12 +162,13 @@ public class Star {
 
 		// set remaining hull pointers
 		// 1. links over ridges with pNew: rotate through new simplices
-		for (Facet facet : newFacets) {
+		for (int idx = 0; idx < newFacets.size(); idx++) {
+			Facet facet = newFacets.get(idx);
 			Face face = facet.faces[0];
 			Point[] facePoints = face.points();
-			for (int faceIdx = 0; faceIdx < DIM; faceIdx++) {
+			for (int faceIdx = 0; faceIdx < pMid.enumerator.dim; faceIdx++) {
 				Point pOpposite = facePoints[faceIdx];
-				if (pOpposite != pNew && face.hNeighbors[faceIdx] == null) {
+				if (pOpposite != pNew && face.hNeighbor(faceIdx) == null) {
 					face.hLinkTo(Triangulator.rotateThroughSimplices(face, pOpposite).r, faceIdx);
 				}
 			}
@@ -145,17 +177,18 @@ public class Star {
 		// facets which stays on the hull, rotate through dead simplices, then
 		// rotate back through new simplices, to find the new face that attached
 		// at this ridge
-		for (AbstractSimplex destroyedSimplex : destroyedSimplices) {
+		for (int idx = 0; idx < destroyedSimplices.size(); idx++) {
+			AbstractSimplex destroyedSimplex = destroyedSimplices.get(idx);
 			if (destroyedSimplex instanceof Facet) {
 				Face face = destroyedSimplex.faces[0];
 				Point[] facePoints = face.points();
-				for (int faceIdx = 0; faceIdx < DIM; faceIdx++) {
+				for (int faceIdx = 0; faceIdx < pMid.enumerator.dim; faceIdx++) {
 					Point pOpposite = facePoints[faceIdx];
 					if (pOpposite == pMid) {
 						// link to boundary face - already set
 						continue;
 					}
-					Face faceNeighbor = face.hNeighbors[faceIdx];
+					Face faceNeighbor = face.hNeighbor(faceIdx);
 					if (faceNeighbor.simplex.isDead() || faceNeighbor.simplex.maxPoint() == pNew) {
 						// ridge opposite pOpposite isn't on the hull
 						continue;
@@ -168,26 +201,25 @@ public class Star {
 				}
 			}
 		}
-
-		return newBoundaryFaces;
 	}
 
-	private ArrayList<Face> findOldBoundaryFaces(ArrayList<AbstractSimplex> destroyedSimplices) {
-		ArrayList<Face> oldBoundaryFaces = new ArrayList<Face>();
-		for (AbstractSimplex simplex : destroyedSimplices) {
+	private void findOldBoundaryFaces(ArrayList<AbstractSimplex> destroyedSimplices,
+			ArrayList<Face> oldBoundaryFaces) {
+		oldBoundaryFaces.clear();
+		for (int idx = 0; idx < destroyedSimplices.size(); idx++) {
+			AbstractSimplex simplex = destroyedSimplices.get(idx);
 			if (simplex instanceof Simplex) {
 				oldBoundaryFaces.add(((Simplex) simplex).faceOpposite(pMid).r);
 			}
 		}
-		return oldBoundaryFaces;
 	}
 
-	private ArrayList<AbstractSimplex> findDestroyedSimplices(Simplex simplexNew, Point pNew) {
-		ArrayList<AbstractSimplex> destroyedSimplices = new ArrayList<AbstractSimplex>();
+	private void findDestroyedSimplices(Simplex simplexNew, Point pNew, ArrayList<AbstractSimplex> destroyedSimplices,
+			ArrayStack<AbstractSimplex> simplicesToDestroy) {
+		destroyedSimplices.clear();
 		// BFS to find all simplices destroyed upon insertion of pNew
 		// (uses firstSubsequentKillerIndex as visited marker)
-		Stack<AbstractSimplex> simplicesToDestroy = new Stack<AbstractSimplex>();
-		simplicesToDestroy.add(simplexNew.faceOpposite(pNew).faceStar().simplex);
+		simplicesToDestroy.push(simplexNew.faceOpposite(pNew).faceStar().simplex);
 		while (!simplicesToDestroy.isEmpty()) {
 			AbstractSimplex simplex = simplicesToDestroy.pop();
 			if (simplex.isAlive() && simplex.containsPointInCircumsphere(pNew)) {
@@ -195,22 +227,56 @@ public class Star {
 				destroyedSimplices.add(simplex);
 				for (Face face : simplex.faces) {
 					if (face.r.simplex != null) { // nothing behind boundary
-						simplicesToDestroy.add(face.r.simplex);
+						simplicesToDestroy.push(face.r.simplex);
 					}
 				}
 				if (simplex instanceof Facet) {
 					Face face = simplex.faces[0];
 					Point[] facePoints = face.points();
-					for (int faceIdx = 0; faceIdx < DIM; faceIdx++) {
+					for (int faceIdx = 0; faceIdx < pMid.enumerator.dim; faceIdx++) {
 						if (facePoints[faceIdx] != pMid) {
 							// there are no simplices behind boundary!
-							simplicesToDestroy.add(face.hNeighbors[faceIdx].simplex);
+							simplicesToDestroy.push(face.hNeighbor(faceIdx).simplex);
 						}
 					}
 				}
 			}
 		}
-		return destroyedSimplices;
+	}
+
+	// collects the original instances of the simplices alive in this star,
+	// i.e. of the found simplices with minimum point pMid which weren't killed
+	// yet, by walking the star from its newest face. must not run
+	// concurrently with an update of this star.
+	public void collectAliveSimplices(ArrayList<AbstractSimplex> originals) {
+		if (faceLatest == null) {
+			return;
+		}
+		long markEpoch = pMid.enumerator.nextMarkEpoch();
+		ArrayStack<AbstractSimplex> simplicesToVisit = new ArrayStack<AbstractSimplex>();
+		simplicesToVisit.push(faceLatest.simplex);
+		simplicesToVisit.push(faceLatest.r.simplex);
+		while (!simplicesToVisit.isEmpty()) {
+			AbstractSimplex simplex = simplicesToVisit.pop();
+			if (simplex == null || !simplex.isAlive() || simplex.isMarked(markEpoch)) {
+				continue;
+			}
+			simplex.mark(markEpoch);
+			originals.add(simplex.original);
+			for (Face face : simplex.faces) {
+				simplicesToVisit.push(face.r.simplex);
+			}
+			if (simplex instanceof Facet) {
+				// neighboring facets over ridges incident to pMid
+				Face face = simplex.faces[0];
+				Point[] facePoints = face.points();
+				for (int faceIdx = 0; faceIdx < pMid.enumerator.dim; faceIdx++) {
+					if (facePoints[faceIdx] != pMid && face.hNeighbor(faceIdx) != null) {
+						simplicesToVisit.push(face.hNeighbor(faceIdx).simplex);
+					}
+				}
+			}
+		}
 	}
 
 	private void initWithFirstFace() {
@@ -218,9 +284,9 @@ public class Star {
 		AbstractSimplex facet2 = registeredSimplices.get(1);
 
 		Face faceStar = facet1.faces[0].faceStar();
-		for (int faceIdx = 0; faceIdx < DIM; faceIdx++) {
-			faceStar.hNeighbors[faceIdx] = faceStar.r;
-			faceStar.r.hNeighbors[faceIdx] = faceStar;
+		for (int faceIdx = 0; faceIdx < pMid.enumerator.dim; faceIdx++) {
+			faceStar.setHNeighbor(faceIdx, faceStar.r);
+			faceStar.r.setHNeighbor(faceIdx, faceStar);
 		}
 
 		Facet facet1clone = new Facet(faceStar, -1);
@@ -1,8 +1,9 @@
 package delaunayKD.triangulator;
 
 import java.util.ArrayList;
-import java.util.Stack;
 
+import delaunayKD.EnumerationMetrics;
+import delaunayKD.SimplexSink;
 import delaunayKD.geometry.AbstractSimplex;
 import delaunayKD.geometry.Facet;
 import delaunayKD.geometry.Point;
@@ -10,23 +11,115 @@ import delaunayKD.geometry.Face;
 import delaunayKD.geometry.Simplex;
 
 public abstract class Triangulator {
+	// scratch space of point insertion, set by the subclasses (reused across
+	// insertions, so they don't allocate once grown)
+
 	// faces to attach to during point insertion
-	protected ArrayList<Face> attachingFaces = new ArrayList<Face>();
+	protected ArrayList<Face> attachingFaces;
 
 	// simplices destroyed during point insertion
-	protected ArrayList<AbstractSimplex> destroyedSimplices = new ArrayList<AbstractSimplex>();
+	protected ArrayList<AbstractSimplex> destroyedSimplices;
 
 	// for exploration of destroyed simplices during point insertion
-	protected Stack<AbstractSimplex> simplicesToExplore = new Stack<AbstractSimplex>();
-	
+	protected ArrayStack<AbstractSimplex> simplicesToExplore;
+
+	// simplices created during point insertion
+	protected ArrayList<AbstractSimplex> newSimplices;
+
+	// for matching attaching faces by their ridges during point insertion
+	protected RidgeTable ridgeTable;
+
 	// A list of all faces created by this triangulator
 	// Saves only one face of any face pair.
 	public ArrayList<Face> knownFaces = new ArrayList<Face>();
 
+	// notified whenever a simplex of this triangulation is destroyed, may be
+	// null
+	public SimplexSink sink;
+
+	// number of alive simplices/facets
+	public int size = 0;
+
 	// destroys a simplex which has a new point in its circumsphere
 	protected void destroy(AbstractSimplex simplex, Point pNew) {
 		simplex.firstSubsequentKillerIndex = pNew.i;
 		destroyedSimplices.add(simplex);
+		size--;
+		if (sink != null) {
+			sink.simplexKilled(simplex);
+		}
+		if (pNew.enumerator.alphaExtractor != null) {
+			pNew.enumerator.alphaExtractor.simplexKilled(simplex);
+		}
+	}
+
+	// reports the cavity just excavated for pNew, if metrics are enabled
+	protected void recordCavity(Point pNew) {
+		EnumerationMetrics metrics = pNew.enumerator.metrics;
+		if (metrics != null) {
+			metrics.cavity(destroyedSimplices.size());
+		}
+	}
+
+	// reclaims the structures an update left behind: unlinks the dead faces
+	// of the destroyed simplices (no alive simplex on either side) from the
+	// faces still in use, and clears the hull links of the faces of the new
+	// proper simplices. hull links are only read on the side of a face
+	// without a proper simplex, and a face never loses its proper simplex
+	// (simplices are replaced by newer ones, new facets are created on new
+	// faces), so these links are stale. without both kinds of links, dead
+	// simplices and faces are no longer reachable from the stars and hole
+	// triangulations, and the retained heap tracks the live triangulations
+	// (plus whatever the caller keeps, e.g. the reported simplices). must be
+	// called once an update is complete.
+	static void reclaim(ArrayList<AbstractSimplex> destroyedSimplices,
+			ArrayList<? extends AbstractSimplex> newSimplices) {
+		for (int idx = 0; idx < destroyedSimplices.size(); idx++) {
+			for (Face face : destroyedSimplices.get(idx).faces) {
+				if (isDead(face)) {
+					unlink(face);
+					unlink(face.r);
+				}
+			}
+		}
+		for (int idx = 0; idx < newSimplices.size(); idx++) {
+			AbstractSimplex simplex = newSimplices.get(idx);
+			if (simplex instanceof Simplex) {
+				for (Face face : simplex.faces) {
+					face.hNeighbors = null;
+				}
+			}
+		}
+	}
+
+	// whether no side of face has an alive simplex. faces without any simplex
+	// are kept, they are only reachable through live faces.
+	private static boolean isDead(Face face) {
+		AbstractSimplex simplex = face.simplex;
+		AbstractSimplex simplexR = face.r.simplex;
+		if (simplex == null && simplexR == null) {
+			return false;
+		}
+		return (simplex == null || simplex.isDead()) && (simplexR == null || simplexR.isDead());
+	}
+
+	// clears the links of live faces to the dead face
+	private static void unlink(Face face) {
+		if (face.hNeighbors != null) {
+			for (Face hNeighbor : face.hNeighbors) {
+				if (hNeighbor != null && hNeighbor.hNeighbors != null && !isDead(hNeighbor)) {
+					for (int pIdx = 0; pIdx < hNeighbor.hNeighbors.length; pIdx++) {
+						if (hNeighbor.hNeighbors[pIdx] == face) {
+							hNeighbor.hNeighbors[pIdx] = null;
+						}
+					}
+				}
+			}
+		}
+		Face faceBoundary = face.faceBoundary;
+		if (faceBoundary != null && faceBoundary.faceBoundary == face && !isDead(faceBoundary)) {
+			faceBoundary.faceBoundary = null;
+		}
 	}
 
 	// the index set as time of birth on newly created faces
@@ -47,11 +140,11 @@ public abstract class Triangulator {
 			if (simplex != null && simplex.isAlive() && simplex.containsPointInCircumsphere(pNew)) {
 				destroy(simplex, pNew);
 				for (Face face : simplex.faces) {
-					simplicesToExplore.add(face.r.simplex);
+					simplicesToExplore.push(face.r.simplex);
 				}
 				if (simplex instanceof Facet) {
 					for (Face face : simplex.faces[0].hNeighbors) {
-						simplicesToExplore.add(face.simplex);
+						simplicesToExplore.push(face.simplex);
 					}
 				}
 			}
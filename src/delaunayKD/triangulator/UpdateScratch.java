@@ -0,0 +1,46 @@
+package delaunayKD.triangulator;
+
+import java.util.ArrayList;
+
+import delaunayKD.geometry.AbstractSimplex;
+import delaunayKD.geometry.Face;
+import delaunayKD.geometry.Facet;
+import delaunayKD.geometry.Simplex;
+
+// per-thread scratch space of star and hole triangulation updates. updates
+// of different stars run concurrently in parallel mode, but an update never
+// triggers another one, so each thread needs a single set. lists keep their
+// capacity, so updates don't allocate beyond the simplices and faces they
+// create once the lists have grown to the largest update.
+class UpdateScratch {
+
+	private static final ThreadLocal<UpdateScratch> scratch = new ThreadLocal<UpdateScratch>() {
+		@Override
+		protected UpdateScratch initialValue() {
+			return new UpdateScratch();
+		}
+	};
+
+	static UpdateScratch get() {
+		return scratch.get();
+	}
+
+	// star update
+	final ArrayList<AbstractSimplex> destroyedStarSimplices = new ArrayList<AbstractSimplex>();
+	final ArrayStack<AbstractSimplex> starSimplicesToDestroy = new ArrayStack<AbstractSimplex>();
+	final ArrayList<Face> oldBoundaryFaces = new ArrayList<Face>();
+	final ArrayList<Face> newBoundaryFaces = new ArrayList<Face>();
+	final ArrayList<Facet> newFacets = new ArrayList<Facet>();
+	final ArrayList<Simplex> newStarSimplices = new ArrayList<Simplex>();
+
+	// hole triangulation update
+	final ArrayList<Face> attachingFaces = new ArrayList<Face>();
+	final ArrayList<AbstractSimplex> destroyedSimplices = new ArrayList<AbstractSimplex>();
+	final ArrayStack<AbstractSimplex> simplicesToExplore = new ArrayStack<AbstractSimplex>();
+	final ArrayList<Face> facesToExplore = new ArrayList<Face>();
+	final ArrayStack<Face> hullFacesToExplore = new ArrayStack<Face>();
+	final RidgeTable ridgeTable = new RidgeTable();
+	// result of the update, handed to the caller
+	final ArrayList<AbstractSimplex> newSimplices = new ArrayList<AbstractSimplex>();
+
+}